@@ -0,0 +1,66 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR view of {@link ParallelismTracer.CallTrace}. Kept in its own class so that {@code jdk.jfr}
+ * is only loaded when JFR events were asked for.
+ */
+@Name("IterativeParallelism.Call")
+@Label("IterativeParallelism Call")
+@Category("IterativeParallelism")
+class CallTraceEvent extends Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Threads")
+  int threads;
+
+  @Label("Chunks")
+  int chunks;
+
+  @Label("Chunking")
+  @Timespan
+  long chunking;
+
+  @Label("Thread Start")
+  @Timespan
+  long threadStart;
+
+  @Label("Min Chunk Compute")
+  @Timespan
+  long minChunkCompute;
+
+  @Label("Max Chunk Compute")
+  @Timespan
+  long maxChunkCompute;
+
+  @Label("Join Wait")
+  @Timespan
+  long joinWait;
+
+  @Label("Merge")
+  @Timespan
+  long merge;
+
+  static void commit(ParallelismTracer.CallTrace trace) {
+    CallTraceEvent event = new CallTraceEvent();
+    if (!event.isEnabled()) {
+      return;
+    }
+
+    event.operation = trace.getOperation();
+    event.threads = trace.getThreads();
+    event.chunks = trace.getChunkSizes().length;
+    event.chunking = trace.getChunkingNanos();
+    event.threadStart = trace.getThreadStartNanos();
+    event.minChunkCompute = trace.getMinChunkComputeNanos();
+    event.maxChunkCompute = trace.getMaxChunkComputeNanos();
+    event.joinWait = trace.getJoinWaitNanos();
+    event.merge = trace.getMergeNanos();
+    event.commit();
+  }
+}
@@ -0,0 +1,325 @@
+import static java.util.function.Predicate.isEqual;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * {@link IterativeParallelism} operations over any {@link Collection} or {@link Spliterator}, so
+ * sets, deques and streams ({@code stream.spliterator()}) don't have to be copied to a list first.
+ *
+ * <p>{@link Spliterator#SUBSIZED} sources are partitioned with {@link Spliterator#trySplit()} if
+ * that gives parts of about equal size, as it does for arrays and array lists. Any other source,
+ * e.g. a linked list whose splits grow by a batch each, is shared by all threads, which take
+ * {@value #BATCH_SIZE} elements at a time from it. Either way at most one batch per thread is
+ * held in memory, and results keep the encounter order of the source.
+ */
+public class CollectionParallelism {
+
+  static final int BATCH_SIZE = 1024;
+
+  private final IterativeParallelism parallelism;
+
+  public CollectionParallelism() {
+    this(new IterativeParallelism());
+  }
+
+  /**
+   * Runs on the threads of the given instance, e.g. on the {@code ParallelMapper} of an {@link
+   * EnhancedIterativeParallelism}.
+   */
+  public CollectionParallelism(IterativeParallelism parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public <T> T minimum(int i, Collection<? extends T> values, Comparator<? super T> comparator)
+      throws InterruptedException {
+    return minimum(i, values.spliterator(), comparator);
+  }
+
+  public <T> T minimum(int i, Spliterator<? extends T> values, Comparator<? super T> comparator)
+      throws InterruptedException {
+    List<T> minimums = applyToBatches(i, values, parallelism.<T>minimumFinder(comparator));
+
+    return minimums.stream()
+        .min(comparator)
+        .orElseThrow(() -> new RuntimeException("Could not find min"));
+  }
+
+  public <T> T maximum(int i, Collection<? extends T> values, Comparator<? super T> comparator)
+      throws InterruptedException {
+    return maximum(i, values.spliterator(), comparator);
+  }
+
+  public <T> T maximum(int i, Spliterator<? extends T> values, Comparator<? super T> comparator)
+      throws InterruptedException {
+    List<T> maximums = applyToBatches(i, values, parallelism.<T>maximumFinder(comparator));
+
+    return maximums.stream()
+        .max(comparator)
+        .orElseThrow(() -> new RuntimeException("Could not find max"));
+  }
+
+  public <T> boolean all(int i, Collection<? extends T> values, Predicate<? super T> predicate)
+      throws InterruptedException {
+    return all(i, values.spliterator(), predicate);
+  }
+
+  public <T> boolean all(int i, Spliterator<? extends T> values, Predicate<? super T> predicate)
+      throws InterruptedException {
+    List<Boolean> matchResults = applyToBatches(i, values,
+        parallelism.<T>allMatchChecker(predicate), isEqual(false));
+
+    return matchResults.stream().allMatch(isEqual(true));
+  }
+
+  public <T> boolean any(int i, Collection<? extends T> values, Predicate<? super T> predicate)
+      throws InterruptedException {
+    return any(i, values.spliterator(), predicate);
+  }
+
+  public <T> boolean any(int i, Spliterator<? extends T> values, Predicate<? super T> predicate)
+      throws InterruptedException {
+    List<Boolean> matchResults = applyToBatches(i, values,
+        parallelism.<T>anyMatchChecker(predicate), isEqual(true));
+
+    return matchResults.stream().anyMatch(isEqual(true));
+  }
+
+  public String join(int i, Collection<?> values) throws InterruptedException {
+    return join(i, values.spliterator());
+  }
+
+  public String join(int i, Spliterator<?> values) throws InterruptedException {
+    List<String> joinResults = applyToBatches(i, values, parallelism.listJoiner());
+
+    return joinResults.stream()
+        .collect(joining());
+  }
+
+  public <T> List<T> filter(int i, Collection<? extends T> values,
+      Predicate<? super T> predicate) throws InterruptedException {
+    return filter(i, values.spliterator(), predicate);
+  }
+
+  public <T> List<T> filter(int i, Spliterator<? extends T> values,
+      Predicate<? super T> predicate) throws InterruptedException {
+    List<List<T>> filterResults = applyToBatches(i, values, parallelism.<T>filter(predicate));
+
+    return filterResults.stream()
+        .flatMap(Collection::stream)
+        .collect(toList());
+  }
+
+  public <T, U> List<U> map(int i, Collection<? extends T> values,
+      Function<? super T, ? extends U> function) throws InterruptedException {
+    return map(i, values.spliterator(), function);
+  }
+
+  public <T, U> List<U> map(int i, Spliterator<? extends T> values,
+      Function<? super T, ? extends U> function) throws InterruptedException {
+    List<List<U>> mappingResults =
+        applyToBatches(i, values, parallelism.<T, U>mapper(function));
+
+    return mappingResults.stream()
+        .flatMap(Collection::stream)
+        .collect(toList());
+  }
+
+  private <T, R> List<R> applyToBatches(int i, Spliterator<? extends T> source,
+      IterativeParallelism.ListFunction<T, R> function) throws InterruptedException {
+    return applyToBatches(i, source, function, r -> false);
+  }
+
+  // Returns batch results in encounter order; stops taking batches once one satisfies stop
+  private <T, R> List<R> applyToBatches(int i, Spliterator<? extends T> source,
+      IterativeParallelism.ListFunction<T, R> function, Predicate<? super R> stop)
+      throws InterruptedException {
+    List<BatchSource<T>> sources = partition(source, i);
+    List<List<Keyed<R>>> outputs = new ArrayList<>();
+    AtomicBoolean stopped = new AtomicBoolean();
+
+    List<Runnable> tasks = new ArrayList<>();
+    for (BatchSource<T> batchSource : sources) {
+      List<Keyed<R>> output = new ArrayList<>();
+      outputs.add(output);
+
+      tasks.add(() -> {
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        long key;
+        while (!stopped.get() && (key = batchSource.nextBatch(batch)) >= 0) {
+          R result = function.apply(batch);
+          output.add(new Keyed<>(key, result));
+          batch.clear();
+
+          if (stop.test(result)) {
+            stopped.set(true);
+          }
+        }
+      });
+    }
+
+    parallelism.runInParallel(tasks.size(), tasks);
+
+    return outputs.stream()
+        .flatMap(Collection::stream)
+        .sorted(Comparator.comparingLong(k -> k.key))
+        .map(k -> k.value)
+        .collect(toList());
+  }
+
+  private <T> List<BatchSource<T>> partition(Spliterator<? extends T> source, int i) {
+    List<BatchSource<T>> sources = new ArrayList<>();
+
+    if (source.hasCharacteristics(Spliterator.SUBSIZED)) {
+      List<Spliterator<? extends T>> chunks = new ArrayList<>();
+      chunks.add(source);
+
+      while (chunks.size() < i) {
+        int largest = 0;
+        for (int j = 1; j < chunks.size(); j++) {
+          if (chunks.get(j).estimateSize() > chunks.get(largest).estimateSize()) {
+            largest = j;
+          }
+        }
+
+        Spliterator<? extends T> prefix = chunks.get(largest).trySplit();
+        if (prefix == null) {
+          break;
+        }
+        chunks.add(largest, prefix);
+      }
+
+      if (isBalanced(chunks)) {
+        for (int j = 0; j < chunks.size(); j++) {
+          sources.add(new OwnedSource<>(j, chunks.get(j)));
+        }
+        return sources;
+      }
+      // the parts are still in encounter order, so they can be shared one after another
+      source = new ConcatSpliterator<>(chunks);
+    }
+
+    SharedSource<T> shared = new SharedSource<>(source);
+    for (int j = 0; j < i; j++) {
+      sources.add(shared);
+    }
+    return sources;
+  }
+
+  // No part is larger than twice the average one
+  private static boolean isBalanced(List<? extends Spliterator<?>> chunks) {
+    long total = 0;
+    long largest = 0;
+    for (Spliterator<?> chunk : chunks) {
+      total += chunk.estimateSize();
+      largest = Math.max(largest, chunk.estimateSize());
+    }
+    return largest * chunks.size() <= 2 * total + chunks.size();
+  }
+
+  private interface BatchSource<T> {
+
+    /**
+     * Fills the empty batch with up to {@value #BATCH_SIZE} elements and returns a key ordering
+     * this batch among all the others, or {@code -1} if the source is exhausted.
+     */
+    long nextBatch(List<T> batch);
+  }
+
+  private static class OwnedSource<T> implements BatchSource<T> {
+
+    private final long chunkIndex;
+    private final Spliterator<? extends T> spliterator;
+    private long batchIndex = 0;
+
+    OwnedSource(long chunkIndex, Spliterator<? extends T> spliterator) {
+      this.chunkIndex = chunkIndex;
+      this.spliterator = spliterator;
+    }
+
+    @Override
+    public long nextBatch(List<T> batch) {
+      while (batch.size() < BATCH_SIZE && spliterator.tryAdvance(batch::add)) {
+        // keep filling
+      }
+      return batch.isEmpty() ? -1 : chunkIndex << 32 | batchIndex++;
+    }
+  }
+
+  private static class SharedSource<T> implements BatchSource<T> {
+
+    private final Spliterator<? extends T> spliterator;
+    private long batchIndex = 0;
+
+    SharedSource(Spliterator<? extends T> spliterator) {
+      this.spliterator = spliterator;
+    }
+
+    @Override
+    public synchronized long nextBatch(List<T> batch) {
+      while (batch.size() < BATCH_SIZE && spliterator.tryAdvance(batch::add)) {
+        // keep filling
+      }
+      return batch.isEmpty() ? -1 : batchIndex++;
+    }
+  }
+
+  private static class ConcatSpliterator<T> implements Spliterator<T> {
+
+    private final List<Spliterator<? extends T>> parts;
+    private int current = 0;
+
+    ConcatSpliterator(List<Spliterator<? extends T>> parts) {
+      this.parts = parts;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      for (; current < parts.size(); current++) {
+        if (parts.get(current).tryAdvance(action)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      long size = 0;
+      for (int j = current; j < parts.size(); j++) {
+        size += parts.get(j).estimateSize();
+      }
+      return size;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED;
+    }
+  }
+
+  private static class Keyed<R> {
+
+    private final long key;
+    private final R value;
+
+    Keyed(long key, R value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
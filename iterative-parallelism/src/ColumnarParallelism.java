@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * Parallel scans over {@link ColumnarStore} columns. Rows are split into one contiguous range per
+ * thread, and every range runs a tight loop over row indices of a single column, so nothing is
+ * boxed.
+ */
+public class ColumnarParallelism {
+
+  private static final int STOP_CHECK_INTERVAL = 1024;
+
+  private final IterativeParallelism parallelism;
+
+  public ColumnarParallelism() {
+    this(new IterativeParallelism());
+  }
+
+  /**
+   * Runs on the threads of the given instance, e.g. on the {@code ParallelMapper} of an {@link
+   * EnhancedIterativeParallelism}.
+   */
+  public ColumnarParallelism(IterativeParallelism parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns indices of the rows whose value in the column matches the predicate, in row order.
+   */
+  public int[] filter(int i, ColumnarStore.IntColumn column, IntPredicate predicate)
+      throws InterruptedException {
+    return filterRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  public int minimum(int i, ColumnarStore.IntColumn column) throws InterruptedException {
+    return column.get(minimumRow(i, column.size(), (a, b) -> column.get(a) < column.get(b)));
+  }
+
+  public boolean any(int i, ColumnarStore.IntColumn column, IntPredicate predicate)
+      throws InterruptedException {
+    return anyRow(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  public long count(int i, ColumnarStore.IntColumn column, IntPredicate predicate)
+      throws InterruptedException {
+    return countRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  /**
+   * Returns indices of the rows whose value in the column matches the predicate, in row order.
+   */
+  public int[] filter(int i, ColumnarStore.LongColumn column, LongPredicate predicate)
+      throws InterruptedException {
+    return filterRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  public long minimum(int i, ColumnarStore.LongColumn column) throws InterruptedException {
+    return column.get(minimumRow(i, column.size(), (a, b) -> column.get(a) < column.get(b)));
+  }
+
+  public boolean any(int i, ColumnarStore.LongColumn column, LongPredicate predicate)
+      throws InterruptedException {
+    return anyRow(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  public long count(int i, ColumnarStore.LongColumn column, LongPredicate predicate)
+      throws InterruptedException {
+    return countRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  /**
+   * Returns indices of the rows whose value in the column matches the predicate, in row order.
+   */
+  public int[] filter(int i, ColumnarStore.DoubleColumn column, DoublePredicate predicate)
+      throws InterruptedException {
+    return filterRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  /**
+   * Returns the least value in the order of {@link Double#compare}, so NaN is only returned if
+   * every value is NaN.
+   */
+  public double minimum(int i, ColumnarStore.DoubleColumn column) throws InterruptedException {
+    return column.get(minimumRow(i, column.size(),
+        (a, b) -> Double.compare(column.get(a), column.get(b)) < 0));
+  }
+
+  public boolean any(int i, ColumnarStore.DoubleColumn column, DoublePredicate predicate)
+      throws InterruptedException {
+    return anyRow(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  public long count(int i, ColumnarStore.DoubleColumn column, DoublePredicate predicate)
+      throws InterruptedException {
+    return countRows(i, column.size(), row -> predicate.test(column.get(row)));
+  }
+
+  private int[] filterRows(int i, int size, IntPredicate matches) throws InterruptedException {
+    List<RowIndices> parts = scan(i, size, (from, to) -> {
+      RowIndices rows = new RowIndices();
+      for (int row = from; row < to; row++) {
+        if (matches.test(row)) {
+          rows.add(row);
+        }
+      }
+      return rows;
+    });
+
+    int[] rows = new int[parts.stream().mapToInt(p -> p.size).sum()];
+    int position = 0;
+    for (RowIndices part : parts) {
+      System.arraycopy(part.rows, 0, rows, position, part.size);
+      position += part.size;
+    }
+    return rows;
+  }
+
+  private int minimumRow(int i, int size, RowOrder order) throws InterruptedException {
+    if (size == 0) {
+      throw new RuntimeException("Could not find min");
+    }
+
+    List<Integer> minimums = scan(i, size, (from, to) -> {
+      int min = from;
+      for (int row = from + 1; row < to; row++) {
+        if (order.less(row, min)) {
+          min = row;
+        }
+      }
+      return min;
+    });
+
+    int min = minimums.get(0);
+    for (int row : minimums) {
+      if (order.less(row, min)) {
+        min = row;
+      }
+    }
+    return min;
+  }
+
+  private boolean anyRow(int i, int size, IntPredicate matches) throws InterruptedException {
+    AtomicBoolean found = new AtomicBoolean();
+
+    scan(i, size, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        if ((row - from) % STOP_CHECK_INTERVAL == 0 && found.get()) {
+          break;
+        }
+        if (matches.test(row)) {
+          found.set(true);
+          break;
+        }
+      }
+      return null;
+    });
+
+    return found.get();
+  }
+
+  private long countRows(int i, int size, IntPredicate matches) throws InterruptedException {
+    List<Long> counts = scan(i, size, (from, to) -> {
+      long count = 0;
+      for (int row = from; row < to; row++) {
+        if (matches.test(row)) {
+          count++;
+        }
+      }
+      return count;
+    });
+
+    return counts.stream().mapToLong(Long::longValue).sum();
+  }
+
+  // Applies the function to up to i even ranges of rows [0, size), returns results in row order
+  private <R> List<R> scan(int i, int size, RangeFunction<R> function)
+      throws InterruptedException {
+    int ranges = Math.max(1, Math.min(i, size));
+    Object[] results = new Object[ranges];
+    List<Runnable> tasks = new ArrayList<>();
+
+    int from = 0;
+    for (int j = 0; j < ranges; j++) {
+      int range = j;
+      int rangeFrom = from;
+      int rangeTo = from + size / ranges + (j < size % ranges ? 1 : 0);
+      if (rangeFrom < rangeTo) {
+        tasks.add(() -> results[range] = function.apply(rangeFrom, rangeTo));
+      }
+      from = rangeTo;
+    }
+
+    parallelism.runInParallel(i, tasks);
+
+    List<R> resultList = new ArrayList<>();
+    for (Object result : results) {
+      if (result != null) {
+        @SuppressWarnings("unchecked")
+        R r = (R) result;
+        resultList.add(r);
+      }
+    }
+    return resultList;
+  }
+
+  private interface RangeFunction<R> {
+
+    R apply(int from, int to);
+  }
+
+  private interface RowOrder {
+
+    boolean less(int row, int other);
+  }
+
+  private static class RowIndices {
+
+    private int[] rows = new int[16];
+    private int size = 0;
+
+    void add(int row) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      rows[size++] = row;
+    }
+  }
+}
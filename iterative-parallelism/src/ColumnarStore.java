@@ -0,0 +1,180 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap column-oriented table of primitive records. Every column lives in its own direct
+ * {@link ByteBuffer}, so a scan over one column reads a single contiguous block of memory and the
+ * records put no load on the garbage collector.
+ *
+ * <p>Rows are appended by a single writer with {@link #addRow()} and then filled through the typed
+ * columns. Once the store is handed to {@link ColumnarParallelism} it may be read concurrently.
+ */
+public class ColumnarStore {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  // rows that fit a single buffer for every column type
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+  private final List<Column> columns = new ArrayList<>();
+  private int capacity;
+  private int size = 0;
+
+  public ColumnarStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ColumnarStore(int initialCapacity) {
+    this.capacity = Math.min(Math.max(1, initialCapacity), MAX_CAPACITY);
+  }
+
+  public IntColumn addIntColumn(String name) {
+    return addColumn(new IntColumn(this, name, capacity));
+  }
+
+  public LongColumn addLongColumn(String name) {
+    return addColumn(new LongColumn(this, name, capacity));
+  }
+
+  public DoubleColumn addDoubleColumn(String name) {
+    return addColumn(new DoubleColumn(this, name, capacity));
+  }
+
+  /**
+   * Appends a row with all values set to zero and returns its index.
+   *
+   * @throws IllegalStateException if the store already holds the largest number of rows a column
+   *     buffer can.
+   */
+  public int addRow() {
+    if (size == capacity) {
+      if (capacity == MAX_CAPACITY) {
+        throw new IllegalStateException("Store is full at " + capacity + " rows");
+      }
+      int grown = (int) Math.min(2L * capacity, MAX_CAPACITY);
+      columns.forEach(c -> c.grow(grown));
+      // only now, so a failed allocation leaves no column smaller than the capacity
+      capacity = grown;
+    }
+    return size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private <C extends Column> C addColumn(C column) {
+    columns.add(column);
+    return column;
+  }
+
+  private static ByteBuffer allocate(int capacity, int bytes) {
+    return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, bytes)).order(ByteOrder.nativeOrder());
+  }
+
+  abstract static class Column {
+
+    private final ColumnarStore store;
+    private final String name;
+
+    Column(ColumnarStore store, String name) {
+      this.store = store;
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the number of rows in the owning store.
+     */
+    public int size() {
+      return store.size();
+    }
+
+    abstract void grow(int capacity);
+  }
+
+  public static class IntColumn extends Column {
+
+    private IntBuffer values;
+
+    IntColumn(ColumnarStore store, String name, int capacity) {
+      super(store, name);
+      this.values = allocate(capacity, Integer.BYTES).asIntBuffer();
+    }
+
+    public int get(int row) {
+      return values.get(row);
+    }
+
+    public void set(int row, int value) {
+      values.put(row, value);
+    }
+
+    @Override
+    void grow(int capacity) {
+      IntBuffer grown = allocate(capacity, Integer.BYTES).asIntBuffer();
+      values.rewind();
+      grown.put(values);
+      values = grown;
+    }
+  }
+
+  public static class LongColumn extends Column {
+
+    private LongBuffer values;
+
+    LongColumn(ColumnarStore store, String name, int capacity) {
+      super(store, name);
+      this.values = allocate(capacity, Long.BYTES).asLongBuffer();
+    }
+
+    public long get(int row) {
+      return values.get(row);
+    }
+
+    public void set(int row, long value) {
+      values.put(row, value);
+    }
+
+    @Override
+    void grow(int capacity) {
+      LongBuffer grown = allocate(capacity, Long.BYTES).asLongBuffer();
+      values.rewind();
+      grown.put(values);
+      values = grown;
+    }
+  }
+
+  public static class DoubleColumn extends Column {
+
+    private DoubleBuffer values;
+
+    DoubleColumn(ColumnarStore store, String name, int capacity) {
+      super(store, name);
+      this.values = allocate(capacity, Double.BYTES).asDoubleBuffer();
+    }
+
+    public double get(int row) {
+      return values.get(row);
+    }
+
+    public void set(int row, double value) {
+      values.put(row, value);
+    }
+
+    @Override
+    void grow(int capacity) {
+      DoubleBuffer grown = allocate(capacity, Double.BYTES).asDoubleBuffer();
+      values.rewind();
+      grown.put(values);
+      values = grown;
+    }
+  }
+}
@@ -6,6 +6,7 @@ import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -27,7 +28,7 @@ public class EnhancedIterativeParallelism extends IterativeParallelism {
     if (parallelMapper != null) {
       List<List<? extends T>> chunks = splitToChunks(list, i);
 
-      List<? extends T> minimums = parallelMapper.map(minimumFinder(comparator), chunks);
+      List<? extends T> minimums = parallelMapper.map(this.<T>minimumFinder(comparator), chunks);
 
       return minimums.stream()
           .min(comparator)
@@ -44,7 +45,7 @@ public class EnhancedIterativeParallelism extends IterativeParallelism {
     if (parallelMapper != null) {
       List<List<? extends T>> chunks = splitToChunks(list, i);
 
-      List<? extends T> maximums = parallelMapper.map(maximumFinder(comparator), chunks);
+      List<? extends T> maximums = parallelMapper.map(this.<T>maximumFinder(comparator), chunks);
 
       return maximums.stream()
           .max(comparator)
@@ -54,6 +55,22 @@ public class EnhancedIterativeParallelism extends IterativeParallelism {
     return super.maximum(i, list, comparator);
   }
 
+  @Override
+  public <T> IndexedValue<T> argMinimum(int i, List<? extends T> list,
+      Comparator<? super T> comparator) throws InterruptedException {
+
+    if (parallelMapper != null) {
+      List<List<? extends T>> chunks = splitToChunks(list, i);
+
+      List<IndexedValue<T>> minimums =
+          parallelMapper.map(this.<T>argMinimumFinder(comparator), chunks);
+
+      return argMinimumOf(chunks, minimums, comparator);
+    }
+
+    return super.argMinimum(i, list, comparator);
+  }
+
   @Override
   public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate)
       throws InterruptedException {
@@ -132,4 +149,105 @@ public class EnhancedIterativeParallelism extends IterativeParallelism {
 
     return super.map(i, list, function);
   }
+
+  @Override
+  void runInParallel(int i, List<Runnable> tasks) throws InterruptedException {
+    if (parallelMapper != null) {
+      parallelMapper.map(taskRunner(), splitToChunks(tasks, i));
+      return;
+    }
+
+    super.runInParallel(i, tasks);
+  }
+
+  @Override
+  public <T, U> PartialResult<List<U>> map(int i, List<? extends T> list,
+      Function<? super T, ? extends U> function, long timeout, TimeUnit unit)
+      throws InterruptedException {
+
+    if (parallelMapper != null) {
+      long deadline = deadline(timeout, unit);
+      List<List<? extends T>> chunks = splitToChunks(list, i);
+
+      List<Prefix<List<U>>> prefixes =
+          parallelMapper.map(this.<T, U>mapper(function, deadline), chunks);
+
+      return concatPrefixes(chunks, prefixes);
+    }
+
+    return super.map(i, list, function, timeout, unit);
+  }
+
+  @Override
+  public <T> PartialResult<List<T>> filter(int i, List<? extends T> list,
+      Predicate<? super T> predicate, long timeout, TimeUnit unit) throws InterruptedException {
+
+    if (parallelMapper != null) {
+      long deadline = deadline(timeout, unit);
+      List<List<? extends T>> chunks = splitToChunks(list, i);
+
+      List<Prefix<List<T>>> prefixes =
+          parallelMapper.map(this.<T>filter(predicate, deadline), chunks);
+
+      return concatPrefixes(chunks, prefixes);
+    }
+
+    return super.filter(i, list, predicate, timeout, unit);
+  }
+
+  @Override
+  public <T> PartialResult<Boolean> any(int i, List<? extends T> list,
+      Predicate<? super T> predicate, long timeout, TimeUnit unit) throws InterruptedException {
+
+    if (parallelMapper != null) {
+      long deadline = deadline(timeout, unit);
+      List<List<? extends T>> chunks = splitToChunks(list, i);
+
+      List<Prefix<Boolean>> prefixes =
+          parallelMapper.map(this.<T>anyMatchChecker(predicate, deadline), chunks);
+
+      return anyOfPrefixes(chunks, prefixes);
+    }
+
+    return super.any(i, list, predicate, timeout, unit);
+  }
+
+  @Override
+  public long approxDistinct(int i, List<?> list, int precision) throws InterruptedException {
+    if (parallelMapper != null) {
+      List<List<?>> chunks = splitToChunks(list, i);
+
+      List<HyperLogLog> sketches = parallelMapper.map(distinctCounter(precision), chunks);
+
+      HyperLogLog sketch = new HyperLogLog(precision);
+      for (HyperLogLog chunkSketch : sketches) {
+        sketch.merge(chunkSketch);
+      }
+      return sketch.estimate();
+    }
+
+    return super.approxDistinct(i, list, precision);
+  }
+
+  @Override
+  public <T> List<T> approxQuantiles(int i, List<? extends T> list,
+      Comparator<? super T> comparator, int sketchSize, List<Double> fractions)
+      throws InterruptedException {
+
+    if (parallelMapper != null) {
+      List<List<? extends T>> chunks = splitToChunks(list, i);
+
+      List<KllSketch<T>> sketches =
+          parallelMapper.map(this.<T>quantileSketcher(comparator, sketchSize), chunks);
+
+      KllSketch<T> sketch = new KllSketch<>(sketchSize, comparator);
+      for (KllSketch<T> chunkSketch : sketches) {
+        sketch.merge(chunkSketch);
+      }
+
+      return quantiles(sketch, fractions);
+    }
+
+    return super.approxQuantiles(i, list, comparator, sketchSize, fractions);
+  }
 }
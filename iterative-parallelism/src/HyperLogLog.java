@@ -0,0 +1,105 @@
+import java.util.Objects;
+
+/**
+ * HyperLogLog distinct-count sketch. Memory is fixed at {@code 2^precision} bytes and the relative
+ * standard error of {@link #estimate()} is about {@code 1.04 / sqrt(2^precision)}, e.g. ~0.8% for
+ * the default precision of 14 (16 KiB).
+ *
+ * <p>Elements are hashed through {@link Object#hashCode()} spread to 64 bits, so elements with equal
+ * hash codes are counted once. Sketches with the same precision can be merged, which is what allows
+ * every chunk to build its own sketch.
+ */
+public class HyperLogLog {
+
+  public static final int DEFAULT_PRECISION = 14;
+
+  private static final int MIN_PRECISION = 4;
+  private static final int MAX_PRECISION = 18;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException(
+          "Precision should be in [" + MIN_PRECISION + ", " + MAX_PRECISION + "]");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public void add(Object element) {
+    long hash = mix(Objects.hashCode(element));
+
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+
+    if (registers[index] < rank) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  public HyperLogLog merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Could not merge sketches with different precision");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (registers[i] < other.registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+    return this;
+  }
+
+  public long estimate() {
+    int m = registers.length;
+
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // small range correction: linear counting is far more accurate here
+      estimate = m * Math.log((double) m / zeros);
+    }
+
+    return Math.round(estimate);
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  // murmur3 fmix64, a bijection, so distinct hash codes never collide here
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -3,28 +3,51 @@ import static java.util.stream.Collectors.toList;
 
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class IterativeParallelism implements ListIP {
 
+  private static final long INTERRUPT_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private volatile ParallelismTracer tracer;
+
+  /**
+   * Enables per-call phase tracing of the thread-based operations, {@code null} disables it.
+   */
+  public void setTracer(ParallelismTracer tracer) {
+    this.tracer = tracer;
+  }
+
+  Trace trace(String operation, int threads) {
+    ParallelismTracer current = tracer;
+    return current == null ? Trace.NONE : new Trace(current, operation, threads);
+  }
+
   @Override
   public <T> T minimum(int i, List<? extends T> list, Comparator<? super T> comparator)
       throws InterruptedException {
     List<Executor<T, T>> executors = new ArrayList<>(i);
 
+    Trace trace = trace("minimum", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(
         c -> executors.add(startAndReturnThread(new Executor<>(c, minimumFinder(comparator)))));
+    trace.started();
 
     T min = null;
     for (Executor<T, T> executor : executors) {
       min = isBiggerOrNull(min, executor.getResult(), comparator) ? executor.getResult() : min;
     }
 
+    trace.finished(executors);
     return min;
   }
 
@@ -71,16 +94,20 @@ public class IterativeParallelism implements ListIP {
       throws InterruptedException {
     List<Executor<T, T>> executors = new ArrayList<>();
 
+    Trace trace = trace("maximum", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(
         c -> executors.add(startAndReturnThread(new Executor<>(c, maximumFinder(comparator)))));
+    trace.started();
 
     T max = null;
     for (Executor<T, T> executor : executors) {
       max = isLessOrNull(max, executor.getResult(), comparator) ? executor.getResult() : max;
     }
 
+    trace.finished(executors);
     return max;
   }
 
@@ -94,15 +121,84 @@ public class IterativeParallelism implements ListIP {
     return value == null || comparator.compare(value, comparing) < 0;
   }
 
+  public <T> IndexedValue<T> argMinimum(int i, List<? extends T> list,
+      Comparator<? super T> comparator) throws InterruptedException {
+    List<Executor<T, IndexedValue<T>>> executors = new ArrayList<>();
+
+    Trace trace = trace("argMinimum", i);
+    List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
+
+    chunks.forEach(c -> executors
+        .add(startAndReturnThread(new Executor<>(c, argMinimumFinder(comparator)))));
+    trace.started();
+
+    List<IndexedValue<T>> minimums = new ArrayList<>();
+    for (Executor<T, IndexedValue<T>> executor : executors) {
+      minimums.add(executor.getResult());
+    }
+
+    IndexedValue<T> min = argMinimumOf(chunks, minimums, comparator);
+    trace.finished(executors);
+    return min;
+  }
+
+  public <T> IndexedValue<T> argMaximum(int i, List<? extends T> list,
+      Comparator<? super T> comparator) throws InterruptedException {
+    return argMinimum(i, list, Collections.reverseOrder(comparator));
+  }
+
+  // Strict comparison keeps the first of equal elements, so ties go to the lowest index
+  <T> ListFunction<T, IndexedValue<T>> argMinimumFinder(Comparator<? super T> comparator) {
+    return l -> {
+      if (l.isEmpty()) {
+        throw new RuntimeException("Could not find min in array :(");
+      }
+
+      // chunks of a linked list are sub-lists too, so walk them instead of indexing
+      int minIndex = -1;
+      T min = null;
+      int j = 0;
+      for (T element : l) {
+        if (minIndex < 0 || comparator.compare(element, min) < 0) {
+          minIndex = j;
+          min = element;
+        }
+        j++;
+      }
+      return new IndexedValue<>(minIndex, min);
+    };
+  }
+
+  // Chunk results hold chunk-local indices, shift them by the chunk offsets while merging
+  <T> IndexedValue<T> argMinimumOf(List<? extends List<?>> chunks,
+      List<IndexedValue<T>> minimums, Comparator<? super T> comparator) {
+    IndexedValue<T> min = null;
+
+    int chunkStart = 0;
+    for (int j = 0; j < chunks.size(); j++) {
+      IndexedValue<T> candidate = minimums.get(j);
+      if (min == null || comparator.compare(candidate.getValue(), min.getValue()) < 0) {
+        min = new IndexedValue<>(chunkStart + candidate.getIndex(), candidate.getValue());
+      }
+      chunkStart += chunks.get(j).size();
+    }
+
+    return min;
+  }
+
   @Override
   public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate)
       throws InterruptedException {
     List<Executor<T, Boolean>> executors = new ArrayList<>();
 
+    Trace trace = trace("all", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(
         c -> executors.add(startAndReturnThread(new Executor<>(c, allMatchChecker(predicate)))));
+    trace.started();
 
     for (int j = 0; j < executors.size(); j++) {
       Executor<T, Boolean> executor = executors.get(j);
@@ -110,10 +206,12 @@ public class IterativeParallelism implements ListIP {
       Boolean allMatchedInChunk = executor.getResult();
       if (!allMatchedInChunk) {
         executors.stream().skip(j).forEach(Thread::interrupt);
+        trace.finished(executors);
         return false;
       }
     }
 
+    trace.finished(executors);
     return true;
   }
 
@@ -136,10 +234,13 @@ public class IterativeParallelism implements ListIP {
       throws InterruptedException {
     List<Executor<T, Boolean>> executors = new ArrayList<>();
 
+    Trace trace = trace("any", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(
         c -> executors.add(startAndReturnThread(new Executor<>(c, anyMatchChecker(predicate)))));
+    trace.started();
 
     for (int j = 0; j < executors.size(); j++) {
       Executor<T, Boolean> executor = executors.get(j);
@@ -147,10 +248,12 @@ public class IterativeParallelism implements ListIP {
       Boolean anyMatchedInChunk = executor.getResult();
       if (anyMatchedInChunk) {
         executors.stream().skip(j).forEach(Thread::interrupt);
+        trace.finished(executors);
         return true;
       }
     }
 
+    trace.finished(executors);
     return false;
   }
 
@@ -172,16 +275,20 @@ public class IterativeParallelism implements ListIP {
   public String join(int i, List<?> list) throws InterruptedException {
     List<Executor<?, String>> executors = new ArrayList<>();
 
+    Trace trace = trace("join", i);
     List<List<?>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks
         .forEach(chunk -> executors.add(startAndReturnThread(new Executor<>(chunk, listJoiner()))));
+    trace.started();
 
     StringBuilder stringBuilder = new StringBuilder();
     for (Executor<?, String> executor : executors) {
       stringBuilder.append(executor.getResult());
     }
 
+    trace.finished(executors);
     return stringBuilder.toString();
   }
 
@@ -197,15 +304,19 @@ public class IterativeParallelism implements ListIP {
 
     List<Executor<T, List<T>>> executors = new ArrayList<>();
 
+    Trace trace = trace("filter", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(c -> executors.add(startAndReturnThread(new Executor<>(c, filter(predicate)))));
+    trace.started();
 
     List<T> result = new ArrayList<>();
     for (Executor<T, List<T>> executor : executors) {
       result.addAll(executor.getResult());
     }
 
+    trace.finished(executors);
     return result;
   }
 
@@ -220,15 +331,19 @@ public class IterativeParallelism implements ListIP {
       Function<? super T, ? extends U> function) throws InterruptedException {
     List<Executor<T, List<U>>> executors = new ArrayList<>();
 
+    Trace trace = trace("map", i);
     List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
 
     chunks.forEach(c -> executors.add(startAndReturnThread(new Executor<>(c, mapper(function)))));
+    trace.started();
 
     List<U> result = new ArrayList<>();
     for (Executor<T, List<U>> executor : executors) {
       result.addAll(executor.getResult());
     }
 
+    trace.finished(executors);
     return result;
   }
 
@@ -238,11 +353,408 @@ public class IterativeParallelism implements ListIP {
         .collect(toList());
   }
 
+  // Sorts chunks in parallel, then merges pairs of runs level by level. Every merge is split
+  // into independent parts by co-ranking, so each level keeps all threads busy. Two buffers are
+  // allocated once and swap roles between levels.
+  public <T> List<T> sort(int i, List<? extends T> list, Comparator<? super T> comparator)
+      throws InterruptedException {
+    Object[] elements = list.toArray();
+
+    List<Integer> bounds = new ArrayList<>();
+    bounds.add(0);
+    for (List<? extends T> chunk : splitToChunks(list, i)) {
+      bounds.add(bounds.get(bounds.size() - 1) + chunk.size());
+    }
+
+    Comparator<Object> objectComparator = uncheckedComparator(comparator);
+
+    List<Runnable> chunkSorts = new ArrayList<>();
+    for (int j = 0; j + 1 < bounds.size(); j++) {
+      int from = bounds.get(j);
+      int to = bounds.get(j + 1);
+      chunkSorts.add(() -> Arrays.sort(elements, from, to, objectComparator));
+    }
+    runInParallel(i, chunkSorts);
+
+    Object[] source = elements;
+    Object[] target = new Object[elements.length];
+
+    int partSize = Math.max(1, (source.length + i - 1) / i);
+    while (bounds.size() > 2) {
+      List<Runnable> merges = new ArrayList<>();
+      List<Integer> mergedBounds = new ArrayList<>();
+
+      for (int j = 0; j + 1 < bounds.size(); j += 2) {
+        int lo = bounds.get(j);
+        int mid = bounds.get(j + 1);
+        int hi = j + 2 < bounds.size() ? bounds.get(j + 2) : mid;
+
+        mergedBounds.add(lo);
+        for (int k = lo; k < hi; k += partSize) {
+          merges.add(mergePart(source, target, lo, mid, hi, k, Math.min(k + partSize, hi),
+              objectComparator));
+        }
+      }
+      mergedBounds.add(source.length);
+
+      runInParallel(i, merges);
+
+      Object[] swap = source;
+      source = target;
+      target = swap;
+      bounds = mergedBounds;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T> result = (List<T>) Arrays.asList(source);
+    return result;
+  }
+
+  // Writes target[from, to) of the stable merge of source[lo, mid) and source[mid, hi)
+  private Runnable mergePart(Object[] source, Object[] target, int lo, int mid, int hi,
+      int from, int to, Comparator<Object> comparator) {
+    return () -> {
+      int l = lo + coRank(source, lo, mid, hi, from - lo, comparator);
+      int r = mid + (from - lo) - (l - lo);
+      for (int k = from; k < to; k++) {
+        if (r >= hi || l < mid && comparator.compare(source[l], source[r]) <= 0) {
+          target[k] = source[l++];
+        } else {
+          target[k] = source[r++];
+        }
+      }
+    };
+  }
+
+  // Number of elements of the left run among the first k elements of the stable merge
+  private int coRank(Object[] source, int lo, int mid, int hi, int k,
+      Comparator<Object> comparator) {
+    int low = Math.max(0, k - (hi - mid));
+    int high = Math.min(k, mid - lo);
+    while (true) {
+      int l = (low + high) >>> 1;
+      int r = k - l;
+      if (l > 0 && r < hi - mid && comparator.compare(source[lo + l - 1], source[mid + r]) > 0) {
+        high = l - 1;
+      } else if (r > 0 && l < mid - lo
+          && comparator.compare(source[mid + r - 1], source[lo + l]) >= 0) {
+        low = l + 1;
+      } else {
+        return l;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Comparator<Object> uncheckedComparator(Comparator<? super T> comparator) {
+    return (a, b) -> comparator.compare((T) a, (T) b);
+  }
+
+  void runInParallel(int i, List<Runnable> tasks) throws InterruptedException {
+    List<Executor<Runnable, Void>> executors = new ArrayList<>();
+
+    List<List<? extends Runnable>> chunks = splitToChunks(tasks, i);
+
+    chunks.forEach(c -> executors.add(startAndReturnThread(new Executor<>(c, taskRunner()))));
+
+    for (Executor<Runnable, Void> executor : executors) {
+      executor.getResult();
+    }
+  }
+
+  ListFunction<Runnable, Void> taskRunner() {
+    return l -> {
+      l.forEach(Runnable::run);
+      return null;
+    };
+  }
+
+  public <T, U> PartialResult<List<U>> map(int i, List<? extends T> list,
+      Function<? super T, ? extends U> function, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long deadline = deadline(timeout, unit);
+
+    List<Executor<T, Prefix<List<U>>>> executors = new ArrayList<>();
+
+    List<List<? extends T>> chunks = splitToChunks(list, i);
+
+    chunks.forEach(
+        c -> executors.add(startAndReturnThread(new Executor<>(c, mapper(function, deadline)))));
+
+    return concatPrefixes(chunks, awaitPrefixes(executors, deadline));
+  }
+
+  <T, U> ListFunction<T, Prefix<List<U>>> mapper(Function<? super T, ? extends U> function,
+      long deadline) {
+    return l -> {
+      List<U> result = new ArrayList<>();
+      for (T element : l) {
+        if (isExpired(deadline)) {
+          break;
+        }
+        result.add(function.apply(element));
+      }
+      return new Prefix<>(result.size(), result);
+    };
+  }
+
+  public <T> PartialResult<List<T>> filter(int i, List<? extends T> list,
+      Predicate<? super T> predicate, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = deadline(timeout, unit);
+
+    List<Executor<T, Prefix<List<T>>>> executors = new ArrayList<>();
+
+    List<List<? extends T>> chunks = splitToChunks(list, i);
+
+    chunks.forEach(
+        c -> executors.add(startAndReturnThread(new Executor<>(c, filter(predicate, deadline)))));
+
+    return concatPrefixes(chunks, awaitPrefixes(executors, deadline));
+  }
+
+  <T> ListFunction<T, Prefix<List<T>>> filter(Predicate<? super T> predicate, long deadline) {
+    return l -> {
+      List<T> result = new ArrayList<>();
+      int processed = 0;
+      for (T element : l) {
+        if (isExpired(deadline)) {
+          break;
+        }
+        if (predicate.test(element)) {
+          result.add(element);
+        }
+        processed++;
+      }
+      return new Prefix<>(processed, result);
+    };
+  }
+
+  public <T> PartialResult<Boolean> any(int i, List<? extends T> list,
+      Predicate<? super T> predicate, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = deadline(timeout, unit);
+
+    List<Executor<T, Prefix<Boolean>>> executors = new ArrayList<>();
+
+    List<List<? extends T>> chunks = splitToChunks(list, i);
+
+    chunks.forEach(c -> executors
+        .add(startAndReturnThread(new Executor<>(c, anyMatchChecker(predicate, deadline)))));
+
+    List<Prefix<Boolean>> prefixes = new ArrayList<>();
+    for (int j = 0; j < executors.size(); j++) {
+      Prefix<Boolean> prefix = awaitPrefix(executors.get(j), deadline);
+      prefixes.add(prefix);
+
+      if (prefix != null && prefix.value) {
+        executors.stream().skip(j).forEach(Thread::interrupt);
+        executors.stream().skip(j + 1).forEach(e -> prefixes.add(null));
+        break;
+      }
+    }
+
+    return anyOfPrefixes(chunks, prefixes);
+  }
+
+  <T> ListFunction<T, Prefix<Boolean>> anyMatchChecker(Predicate<? super T> predicate,
+      long deadline) {
+    return l -> {
+      int processed = 0;
+      for (T element : l) {
+        if (isExpired(deadline)) {
+          break;
+        }
+        processed++;
+        if (predicate.test(element)) {
+          return new Prefix<>(processed, true);
+        }
+      }
+      return new Prefix<>(processed, false);
+    };
+  }
+
+  long deadline(long timeout, TimeUnit unit) {
+    return System.nanoTime() + unit.toNanos(timeout);
+  }
+
+  private boolean isExpired(long deadline) {
+    return Thread.currentThread().isInterrupted() || System.nanoTime() - deadline >= 0;
+  }
+
+  // Returns null for chunks still running after the deadline and a short grace, those are
+  // interrupted and abandoned
+  private <R> List<Prefix<R>> awaitPrefixes(List<? extends Executor<?, Prefix<R>>> executors,
+      long deadline) throws InterruptedException {
+    List<Prefix<R>> prefixes = new ArrayList<>();
+    for (Executor<?, Prefix<R>> executor : executors) {
+      prefixes.add(awaitPrefix(executor, deadline));
+    }
+    return prefixes;
+  }
+
+  private <R> Prefix<R> awaitPrefix(Executor<?, Prefix<R>> executor, long deadline)
+      throws InterruptedException {
+    joinUntil(executor, deadline);
+
+    if (executor.isAlive()) {
+      // chunk functions stop after the element in progress and return what they have done
+      executor.interrupt();
+      joinUntil(executor, deadline + INTERRUPT_GRACE_NANOS);
+      if (executor.isAlive()) {
+        return null;
+      }
+    }
+    return executor.getResult();
+  }
+
+  private void joinUntil(Thread thread, long deadline) throws InterruptedException {
+    long remaining = deadline - System.nanoTime();
+    if (remaining > 0) {
+      TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+    }
+  }
+
+  <U> PartialResult<List<U>> concatPrefixes(List<? extends List<?>> chunks,
+      List<Prefix<List<U>>> prefixes) {
+    List<U> result = new ArrayList<>();
+    for (Prefix<List<U>> prefix : prefixes) {
+      if (prefix != null) {
+        result.addAll(prefix.value);
+      }
+    }
+
+    return new PartialResult<>(result, completedRanges(chunks, prefixes),
+        isEveryChunkCompleted(chunks, prefixes));
+  }
+
+  PartialResult<Boolean> anyOfPrefixes(List<? extends List<?>> chunks,
+      List<Prefix<Boolean>> prefixes) {
+    boolean found = prefixes.stream().anyMatch(p -> p != null && p.value);
+
+    return new PartialResult<>(found, completedRanges(chunks, prefixes),
+        found || isEveryChunkCompleted(chunks, prefixes));
+  }
+
+  private boolean isEveryChunkCompleted(List<? extends List<?>> chunks,
+      List<? extends Prefix<?>> prefixes) {
+    for (int j = 0; j < chunks.size(); j++) {
+      Prefix<?> prefix = prefixes.get(j);
+      if (prefix == null || prefix.length < chunks.get(j).size()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<PartialResult.Range> completedRanges(List<? extends List<?>> chunks,
+      List<? extends Prefix<?>> prefixes) {
+    List<PartialResult.Range> ranges = new ArrayList<>();
+
+    int chunkStart = 0;
+    int from = -1;
+    int to = -1;
+    for (int j = 0; j < chunks.size(); j++) {
+      Prefix<?> prefix = prefixes.get(j);
+      if (prefix != null && prefix.length > 0) {
+        if (chunkStart != to) {
+          if (from >= 0) {
+            ranges.add(new PartialResult.Range(from, to));
+          }
+          from = chunkStart;
+        }
+        to = chunkStart + prefix.length;
+      }
+      chunkStart += chunks.get(j).size();
+    }
+    if (from >= 0) {
+      ranges.add(new PartialResult.Range(from, to));
+    }
+
+    return ranges;
+  }
+
+  public long approxDistinct(int i, List<?> list) throws InterruptedException {
+    return approxDistinct(i, list, HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  public long approxDistinct(int i, List<?> list, int precision) throws InterruptedException {
+    List<Executor<?, HyperLogLog>> executors = new ArrayList<>();
+
+    Trace trace = trace("approxDistinct", i);
+    List<List<?>> chunks = splitToChunks(list, i);
+    trace.chunked();
+
+    chunks.forEach(chunk -> executors
+        .add(startAndReturnThread(new Executor<>(chunk, distinctCounter(precision)))));
+    trace.started();
+
+    HyperLogLog sketch = new HyperLogLog(precision);
+    for (Executor<?, HyperLogLog> executor : executors) {
+      sketch.merge(executor.getResult());
+    }
+
+    long estimate = sketch.estimate();
+    trace.finished(executors);
+    return estimate;
+  }
+
+  ListFunction<Object, HyperLogLog> distinctCounter(int precision) {
+    return l -> {
+      HyperLogLog sketch = new HyperLogLog(precision);
+      l.forEach(sketch::add);
+      return sketch;
+    };
+  }
+
+  public <T> List<T> approxQuantiles(int i, List<? extends T> list,
+      Comparator<? super T> comparator, List<Double> fractions) throws InterruptedException {
+    return approxQuantiles(i, list, comparator, KllSketch.DEFAULT_SIZE, fractions);
+  }
+
+  public <T> List<T> approxQuantiles(int i, List<? extends T> list,
+      Comparator<? super T> comparator, int sketchSize, List<Double> fractions)
+      throws InterruptedException {
+    List<Executor<T, KllSketch<T>>> executors = new ArrayList<>();
+
+    Trace trace = trace("approxQuantiles", i);
+    List<List<? extends T>> chunks = splitToChunks(list, i);
+    trace.chunked();
+
+    chunks.forEach(c -> executors
+        .add(startAndReturnThread(new Executor<>(c, quantileSketcher(comparator, sketchSize)))));
+    trace.started();
+
+    KllSketch<T> sketch = new KllSketch<>(sketchSize, comparator);
+    for (Executor<T, KllSketch<T>> executor : executors) {
+      sketch.merge(executor.getResult());
+    }
+
+    List<T> result = quantiles(sketch, fractions);
+    trace.finished(executors);
+    return result;
+  }
+
+  <T> ListFunction<T, KllSketch<T>> quantileSketcher(Comparator<? super T> comparator,
+      int sketchSize) {
+    return l -> {
+      KllSketch<T> sketch = new KllSketch<>(sketchSize, comparator);
+      l.forEach(sketch::add);
+      return sketch;
+    };
+  }
+
+  <T> List<T> quantiles(KllSketch<T> sketch, List<Double> fractions) {
+    return fractions.stream()
+        .map(sketch::quantile)
+        .collect(toList());
+  }
+
   static class Executor<T, R> extends Thread {
 
     private final List<? extends T> array;
     private final ListFunction<T, R> listFunction;
     private R result;
+    private long computeNanos;
+    private long waitNanos;
 
     public Executor(List<? extends T> array, ListFunction<T, R> listFunction) {
       this.array = array;
@@ -250,13 +762,81 @@ public class IterativeParallelism implements ListIP {
     }
 
     public R getResult() throws InterruptedException {
+      long start = System.nanoTime();
       join();
+      waitNanos += System.nanoTime() - start;
       return result;
     }
 
     @Override
     public void run() {
+      long start = System.nanoTime();
       result = listFunction.apply(array);
+      computeNanos = System.nanoTime() - start;
+    }
+  }
+
+  // Phase timestamps of a single traced call, NONE is used when tracing is off
+  static class Trace {
+
+    static final Trace NONE = new Trace(null, null, 0);
+
+    private final ParallelismTracer tracer;
+    private final String operation;
+    private final int threads;
+    private final long begin = System.nanoTime();
+    private long chunked;
+    private long started;
+
+    Trace(ParallelismTracer tracer, String operation, int threads) {
+      this.tracer = tracer;
+      this.operation = operation;
+      this.threads = threads;
+    }
+
+    void chunked() {
+      if (tracer != null) {
+        chunked = System.nanoTime();
+      }
+    }
+
+    void started() {
+      if (tracer != null) {
+        started = System.nanoTime();
+      }
+    }
+
+    // Merge time is what is left of the gather loop after waiting for joins
+    void finished(List<? extends Executor<?, ?>> executors) {
+      if (tracer == null) {
+        return;
+      }
+      long end = System.nanoTime();
+
+      int[] chunkSizes = new int[executors.size()];
+      long[] computeNanos = new long[executors.size()];
+      long waitNanos = 0;
+      for (int j = 0; j < executors.size(); j++) {
+        Executor<?, ?> executor = executors.get(j);
+        chunkSizes[j] = executor.array.size();
+        // a finished thread observed through isAlive() publishes its fields
+        computeNanos[j] = executor.isAlive() ? -1 : executor.computeNanos;
+        waitNanos += executor.waitNanos;
+      }
+
+      tracer.record(operation, threads, chunked - begin, started - chunked, chunkSizes,
+          computeNanos, waitNanos, end - started - waitNanos);
+    }
+  }
+
+  static class Prefix<R> {
+
+    final int length;
+    final R value;
+
+    Prefix(int length, R value) {
+      this.length = length;
+      this.value = value;
     }
   }
 
@@ -1,14 +1,15 @@
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class ParallelMapperImpl implements ParallelMapper {
 
@@ -18,40 +19,103 @@ public class ParallelMapperImpl implements ParallelMapper {
     this.executorService = Executors.newFixedThreadPool(threads);
   }
 
+  /**
+   * Creates an elastic mapper. No thread exists until the first task arrives, a thread is added
+   * only when a task finds no idle thread to run it, up to {@code maxThreads}, and every thread
+   * idle for {@code idleTimeout} retires, so an idle mapper holds no threads at all.
+   */
+  public ParallelMapperImpl(int maxThreads, long idleTimeout, TimeUnit unit) {
+    ElasticQueue queue = new ElasticQueue();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(0, maxThreads, idleTimeout, unit, queue,
+        (task, executor) -> {
+          if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Mapper is closed");
+          }
+          // all maxThreads are busy, the task waits for one of them
+          queue.enqueue(task);
+        });
+    queue.pool = pool;
+    this.executorService = pool;
+  }
+
   @Override
   public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> args)
       throws InterruptedException {
 
-    List<Future<? extends R>> futureResults = args.stream()
-        .map(arg -> (Callable<? extends R>) createTask(function, arg))
-        .map(executorService::submit)
-        .collect(Collectors.toList());
+    // Tasks write straight into their slot; the latch publishes all slots with a single wakeup
+    Object[] results = new Object[args.size()];
+    CountDownLatch completion = new CountDownLatch(args.size());
+    AtomicReference<Throwable> error = new AtomicReference<>();
 
-    List<R> results = new ArrayList<>();
-    for (Future<? extends R> future : futureResults) {
-      try {
-        results.add(future.get());
-      } catch (ExecutionException e) { // there is no way to change throws clause in declaring interface
-        Throwable cause = e.getCause();
-        if (cause instanceof InterruptedException) {
-          throw (InterruptedException) cause;
-        }
-        throw new RuntimeException(e);
+    for (int i = 0; i < args.size(); i++) {
+      executorService.execute(createTask(function, args.get(i), i, results, completion, error));
+    }
+
+    try {
+      completion.await();
+    } catch (InterruptedException e) {
+      error.compareAndSet(null, e); // makes not yet started tasks of this call no-ops
+      throw e;
+    }
+
+    Throwable cause = error.get();
+    if (cause != null) {
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
       }
+      // there is no way to change throws clause in declaring interface
+      throw new RuntimeException(cause);
     }
 
-    return results;
+    @SuppressWarnings("unchecked")
+    List<R> resultList = (List<R>) Arrays.asList(results);
+    return resultList;
   }
 
-  private <T, R> Callable<? extends R> createTask(Function<? super T, ? extends R> f, T a) {
+  private <T, R> Runnable createTask(Function<? super T, ? extends R> f, T a, int index,
+      Object[] results, CountDownLatch completion, AtomicReference<Throwable> error) {
     return () -> {
-      if (Thread.currentThread().isInterrupted()) {
-        throw new InterruptedException("Interrupted :(");
+      try {
+        if (error.get() != null) {
+          return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException("Interrupted :(");
+        }
+        results[index] = f.apply(a);
+      } catch (Throwable e) {
+        error.compareAndSet(null, e);
+      } finally {
+        completion.countDown();
       }
-      return f.apply(a);
     };
   }
 
+  /**
+   * Refuses a task while the pool may still grow and there are fewer idle threads than queued
+   * tasks, which makes the pool start a thread for it. Refused tasks are queued by the rejection
+   * handler once the pool is full.
+   */
+  private static class ElasticQueue extends LinkedBlockingQueue<Runnable> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient ThreadPoolExecutor pool;
+
+    @Override
+    public boolean offer(Runnable task) {
+      int threads = pool.getPoolSize();
+      if (threads < pool.getMaximumPoolSize() && size() >= threads - pool.getActiveCount()) {
+        return false;
+      }
+      return super.offer(task);
+    }
+
+    void enqueue(Runnable task) {
+      super.offer(task);
+    }
+  }
+
   @Override
   public void close() throws InterruptedException {
     executorService.shutdown();
@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects per-call phase timings of {@link IterativeParallelism} operations. Enable it with
+ * {@link IterativeParallelism#setTracer(ParallelismTracer)}.
+ *
+ * <p>Traces go to a fixed-size lock-free ring buffer that keeps the latest {@code capacity} calls.
+ * They can be read back with {@link #snapshot()} or {@link #toJson()}. They can also be emitted
+ * as {@code IterativeParallelism.Call} JFR events while a recording is running.
+ */
+public class ParallelismTracer {
+
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final AtomicReferenceArray<CallTrace> traces;
+  private final AtomicLong sequence = new AtomicLong();
+  private final boolean jfrEvents;
+
+  public ParallelismTracer() {
+    this(DEFAULT_CAPACITY, false);
+  }
+
+  public ParallelismTracer(int capacity, boolean jfrEvents) {
+    this.traces = new AtomicReferenceArray<>(capacity);
+    this.jfrEvents = jfrEvents;
+  }
+
+  void record(String operation, int threads, long chunkingNanos, long threadStartNanos,
+      int[] chunkSizes, long[] chunkComputeNanos, long joinWaitNanos, long mergeNanos) {
+    long id = sequence.getAndIncrement();
+    CallTrace trace = new CallTrace(id, System.currentTimeMillis(), operation, threads,
+        chunkingNanos, threadStartNanos, chunkSizes, chunkComputeNanos, joinWaitNanos, mergeNanos);
+
+    // a slower call may come around after a newer trace took the slot, which it must keep
+    int slot = (int) (id % traces.length());
+    CallTrace current = traces.get(slot);
+    while ((current == null || current.getId() < id)
+        && !traces.compareAndSet(slot, current, trace)) {
+      current = traces.get(slot);
+    }
+
+    if (jfrEvents) {
+      CallTraceEvent.commit(trace);
+    }
+  }
+
+  /**
+   * Returns the retained traces, oldest first.
+   */
+  public List<CallTrace> snapshot() {
+    List<CallTrace> result = new ArrayList<>();
+    for (int i = 0; i < traces.length(); i++) {
+      CallTrace trace = traces.get(i);
+      if (trace != null) {
+        result.add(trace);
+      }
+    }
+    result.sort(Comparator.comparingLong(CallTrace::getId));
+    return result;
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder("[");
+    for (CallTrace trace : snapshot()) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      trace.appendJson(json);
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Timings of a single call. Compute time of a chunk is {@code -1} when the call returned (e.g.
+   * short-circuited) before that chunk finished.
+   */
+  public static class CallTrace {
+
+    private final long id;
+    private final long timestampMillis;
+    private final String operation;
+    private final int threads;
+    private final long chunkingNanos;
+    private final long threadStartNanos;
+    private final int[] chunkSizes;
+    private final long[] chunkComputeNanos;
+    private final long joinWaitNanos;
+    private final long mergeNanos;
+
+    CallTrace(long id, long timestampMillis, String operation, int threads, long chunkingNanos,
+        long threadStartNanos, int[] chunkSizes, long[] chunkComputeNanos, long joinWaitNanos,
+        long mergeNanos) {
+      this.id = id;
+      this.timestampMillis = timestampMillis;
+      this.operation = operation;
+      this.threads = threads;
+      this.chunkingNanos = chunkingNanos;
+      this.threadStartNanos = threadStartNanos;
+      this.chunkSizes = chunkSizes;
+      this.chunkComputeNanos = chunkComputeNanos;
+      this.joinWaitNanos = joinWaitNanos;
+      this.mergeNanos = mergeNanos;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public long getTimestampMillis() {
+      return timestampMillis;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public long getChunkingNanos() {
+      return chunkingNanos;
+    }
+
+    public long getThreadStartNanos() {
+      return threadStartNanos;
+    }
+
+    public int[] getChunkSizes() {
+      return chunkSizes.clone();
+    }
+
+    public long[] getChunkComputeNanos() {
+      return chunkComputeNanos.clone();
+    }
+
+    public long getJoinWaitNanos() {
+      return joinWaitNanos;
+    }
+
+    public long getMergeNanos() {
+      return mergeNanos;
+    }
+
+    public long getMaxChunkComputeNanos() {
+      return Arrays.stream(chunkComputeNanos).max().orElse(0);
+    }
+
+    public long getMinChunkComputeNanos() {
+      return Arrays.stream(chunkComputeNanos).filter(n -> n >= 0).min().orElse(0);
+    }
+
+    void appendJson(StringBuilder json) {
+      json.append("{\"id\":").append(id)
+          .append(",\"timestampMillis\":").append(timestampMillis)
+          .append(",\"operation\":\"").append(operation).append('"')
+          .append(",\"threads\":").append(threads)
+          .append(",\"chunkingNanos\":").append(chunkingNanos)
+          .append(",\"threadStartNanos\":").append(threadStartNanos)
+          .append(",\"chunkSizes\":").append(Arrays.toString(chunkSizes).replace(" ", ""))
+          .append(",\"chunkComputeNanos\":")
+          .append(Arrays.toString(chunkComputeNanos).replace(" ", ""))
+          .append(",\"joinWaitNanos\":").append(joinWaitNanos)
+          .append(",\"mergeNanos\":").append(mergeNanos)
+          .append('}');
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder json = new StringBuilder();
+      appendJson(json);
+      return json.toString();
+    }
+  }
+}
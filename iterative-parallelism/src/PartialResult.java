@@ -0,0 +1,92 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Result of a deadline-bounded operation. Holds the value computed over the elements that were
+ * processed before the deadline together with the index ranges of those elements.
+ */
+public class PartialResult<R> {
+
+  private final R value;
+  private final List<Range> completedRanges;
+  private final boolean complete;
+
+  public PartialResult(R value, List<Range> completedRanges, boolean complete) {
+    this.value = value;
+    this.completedRanges = Collections.unmodifiableList(completedRanges);
+    this.complete = complete;
+  }
+
+  public R getValue() {
+    return value;
+  }
+
+  /**
+   * Returns sorted, non-overlapping index ranges of the source list that were processed.
+   */
+  public List<Range> getCompletedRanges() {
+    return completedRanges;
+  }
+
+  /**
+   * Returns {@code true} if the value is final, i.e. every element was processed or the
+   * operation short-circuited on a processed element.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public String toString() {
+    return "PartialResult{" +
+        "value=" + value +
+        ", completedRanges=" + completedRanges +
+        ", complete=" + complete +
+        '}';
+  }
+
+  /**
+   * Half-open index range {@code [from, to)}.
+   */
+  public static class Range {
+
+    private final int from;
+    private final int to;
+
+    public Range(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public int getFrom() {
+      return from;
+    }
+
+    public int getTo() {
+      return to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Range range = (Range) o;
+      return from == range.from && to == range.to;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + from + ", " + to + ")";
+    }
+  }
+}
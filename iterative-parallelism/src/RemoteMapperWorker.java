@@ -0,0 +1,111 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Worker process of {@link RemoteParallelMapper}. Connects back to the loopback port given as the
+ * only argument, then maps every received batch and replies with either the list of results or
+ * the thrown exception. Exits when the mapper closes the connection.
+ */
+public class RemoteMapperWorker {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: RemoteMapperWorker <port>");
+      return;
+    }
+
+    int port = Integer.parseInt(args[0]);
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+
+      while (true) {
+        byte[] batch;
+        try {
+          batch = readFrame(in);
+        } catch (EOFException e) {
+          return;
+        }
+        writeFrame(out, process(batch));
+      }
+    }
+  }
+
+  private static byte[] process(byte[] batch) throws IOException {
+    Object reply;
+    try {
+      reply = ((Batch) deserialize(batch)).apply();
+    } catch (Throwable e) {
+      reply = e;
+    }
+
+    try {
+      return serialize(reply);
+    } catch (IOException e) {
+      return serialize(new RuntimeException("Could not send result back: " + e));
+    }
+  }
+
+  static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return in.readObject();
+    }
+  }
+
+  static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+    out.writeInt(frame.length);
+    out.write(frame);
+    out.flush();
+  }
+
+  static byte[] readFrame(DataInputStream in) throws IOException {
+    byte[] frame = new byte[in.readInt()];
+    in.readFully(frame);
+    return frame;
+  }
+
+  static class Batch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Function<Object, Object> function;
+    private final List<?> args;
+
+    Batch(Function<Object, Object> function, List<?> args) {
+      this.function = function;
+      this.args = args;
+    }
+
+    List<Object> apply() {
+      List<Object> results = new ArrayList<>(args.size());
+      for (Object arg : args) {
+        results.add(function.apply(arg));
+      }
+      return results;
+    }
+  }
+}
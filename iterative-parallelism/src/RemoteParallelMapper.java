@@ -0,0 +1,335 @@
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * {@link ParallelMapper} that runs the mapping function in separate worker JVMs on this machine.
+ *
+ * <p>Every worker is started with the classpath of the current JVM and talks to its own
+ * dispatcher thread over a loopback socket. Arguments are sent in batches, so the function and
+ * every argument and result have to be {@link Serializable}; lambdas can be made so with an
+ * intersection cast {@code (Function<T, R> & Serializable) ...}. If a worker dies, its in-flight
+ * batch is put back to the queue and a new worker is launched in its place. A worker that does
+ * not reply to a batch within the batch timeout is treated as dead. A dispatcher whose workers fail
+ * to connect {@value #MAX_ATTEMPTS} times in a row gives up, and once every dispatcher has given up
+ * the pending and later calls fail.
+ *
+ * <p>{@link #close()} kills the worker processes, including ones still busy with a batch.
+ */
+public class RemoteParallelMapper implements ParallelMapper {
+
+  private static final int BATCHES_PER_WORKER = 4;
+  private static final int WORKER_START_TIMEOUT_MS = 30_000;
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final int workers;
+  private final String workerClass;
+  private final int workerStartTimeoutMs;
+  private final int batchTimeoutMs;
+  private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+  private final ExecutorService dispatchers;
+  private final AtomicInteger liveDispatchers;
+  // released by close(), which cannot interrupt a dispatcher blocked on a socket
+  private final Set<Closeable> sockets = ConcurrentHashMap.newKeySet();
+  private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean closed = false;
+
+  /**
+   * Creates a mapper that waits for the result of a batch as long as it takes.
+   */
+  public RemoteParallelMapper(int workers) {
+    this(workers, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param batchTimeout how long a worker may take to map a batch before it is killed and the
+   *     batch is given to another worker, {@code 0} to wait forever.
+   */
+  public RemoteParallelMapper(int workers, long batchTimeout, TimeUnit unit) {
+    this(workers, RemoteMapperWorker.class, WORKER_START_TIMEOUT_MS,
+        (int) Math.min(Integer.MAX_VALUE, unit.toMillis(batchTimeout)));
+  }
+
+  // Lets tests launch workers that misbehave
+  RemoteParallelMapper(int workers, Class<?> workerClass, int workerStartTimeoutMs,
+      int batchTimeoutMs) {
+    this.workers = workers;
+    this.workerClass = workerClass.getName();
+    this.workerStartTimeoutMs = workerStartTimeoutMs;
+    this.batchTimeoutMs = batchTimeoutMs;
+    this.dispatchers = Executors.newFixedThreadPool(workers);
+    this.liveDispatchers = new AtomicInteger(workers);
+
+    for (int i = 0; i < workers; i++) {
+      dispatchers.execute(this::serveWorker);
+    }
+  }
+
+  @Override
+  public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> args)
+      throws InterruptedException {
+    if (!(function instanceof Serializable)) {
+      throw new IllegalArgumentException("Function should be Serializable to be sent to workers");
+    }
+    if (closed) {
+      throw new IllegalStateException("Mapper is closed");
+    }
+
+    int batchSize = Math.max(1, (args.size() + workers * BATCHES_PER_WORKER - 1)
+        / (workers * BATCHES_PER_WORKER));
+    int batchesNum = (args.size() + batchSize - 1) / batchSize;
+
+    Call call = new Call(args.size(), batchesNum);
+
+    @SuppressWarnings("unchecked")
+    Function<Object, Object> f = (Function<Object, Object>) function;
+    for (int from = 0; from < args.size(); from += batchSize) {
+      List<? extends T> batchArgs = args.subList(from, Math.min(from + batchSize, args.size()));
+      try {
+        byte[] payload = RemoteMapperWorker.serialize(
+            new RemoteMapperWorker.Batch(f, new ArrayList<>(batchArgs)));
+        batches.add(new Batch(call, from, payload));
+      } catch (IOException e) {
+        call.fail(e);
+        throw new IllegalArgumentException("Could not serialize batch", e);
+      }
+    }
+    // the last dispatcher may have drained the queue before these batches arrived
+    if (liveDispatchers.get() == 0) {
+      failPending(new IOException("No worker could be started"));
+    }
+
+    try {
+      call.completion.await();
+    } catch (InterruptedException e) {
+      call.fail(e); // dispatchers skip the rest of the batches
+      throw e;
+    }
+
+    Throwable cause = call.error.get();
+    if (cause != null) {
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<R> resultList = (List<R>) Arrays.asList(call.results);
+    return resultList;
+  }
+
+  // One dispatcher per worker process; relaunches the worker whenever its connection breaks
+  private void serveWorker() {
+    int failedLaunches = 0;
+    while (!closed && failedLaunches < MAX_ATTEMPTS) {
+      ServerSocket server = null;
+      Socket socket = null;
+      Process process = null;
+      Batch inFlight = null;
+      boolean connected = false;
+      try {
+        server = track(new ServerSocket(0, 1, InetAddress.getLoopbackAddress()));
+        server.setSoTimeout(workerStartTimeoutMs);
+        process = launchWorker(server.getLocalPort());
+        processes.add(process);
+        if (closed) {
+          return;
+        }
+
+        socket = track(server.accept());
+        // a read timeout is the batch timeout, as the worker only writes replies
+        socket.setSoTimeout(batchTimeoutMs);
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        connected = true;
+        failedLaunches = 0;
+
+        while (true) {
+          inFlight = batches.take();
+          if (inFlight.call.error.get() != null) {
+            inFlight.call.completion.countDown();
+            inFlight = null;
+            continue;
+          }
+          inFlight.attempts++;
+
+          RemoteMapperWorker.writeFrame(out, inFlight.payload);
+          byte[] reply = RemoteMapperWorker.readFrame(in);
+
+          Batch done = inFlight;
+          inFlight = null;
+          done.complete(readReply(reply));
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (IOException e) {
+        if (!connected) {
+          failedLaunches++;
+        }
+        if (!closed) {
+          System.err.println("Worker failed, relaunching: " + e);
+        }
+      } finally {
+        if (inFlight != null) {
+          if (inFlight.attempts < MAX_ATTEMPTS) {
+            batches.add(inFlight); // resubmit to whichever worker is alive
+          } else {
+            inFlight.complete(new IOException("Batch killed " + MAX_ATTEMPTS + " workers"));
+          }
+        }
+        release(socket);
+        release(server);
+        if (process != null) {
+          processes.remove(process);
+          process.destroy();
+        }
+      }
+    }
+
+    if (!closed) {
+      System.err.println("Could not start a worker " + MAX_ATTEMPTS + " times, giving up");
+      if (liveDispatchers.decrementAndGet() == 0) {
+        failPending(new IOException("No worker could be started"));
+      }
+    }
+  }
+
+  // Makes close() release the socket, or releases it right away if close() has already run
+  private <S extends Closeable> S track(S socket) throws IOException {
+    sockets.add(socket);
+    if (closed) {
+      socket.close();
+    }
+    return socket;
+  }
+
+  private void release(Closeable socket) {
+    if (socket != null) {
+      sockets.remove(socket);
+      closeQuietly(socket);
+    }
+  }
+
+  private static void closeQuietly(Closeable socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // nothing to do, the socket is abandoned
+    }
+  }
+
+  // A reply that cannot be read fails its batch, the connection itself is still fine
+  private Object readReply(byte[] reply) {
+    try {
+      return RemoteMapperWorker.deserialize(reply);
+    } catch (IOException | ClassNotFoundException e) {
+      return new IOException("Could not read batch results", e);
+    }
+  }
+
+  private void failPending(Throwable cause) {
+    List<Batch> pending = new ArrayList<>();
+    batches.drainTo(pending);
+    pending.forEach(b -> b.complete(cause));
+  }
+
+  private Process launchWorker(int port) throws IOException {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java";
+    return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        workerClass, Integer.toString(port))
+        .inheritIO()
+        .start();
+  }
+
+  /**
+   * Kills the workers and fails the calls that are still running.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    dispatchers.shutdownNow();
+    // unblocks the dispatchers waiting in accept or for a reply
+    sockets.forEach(RemoteParallelMapper::closeQuietly);
+    processes.forEach(Process::destroy);
+
+    try {
+      if (!dispatchers.awaitTermination(20, TimeUnit.SECONDS)) {
+        System.err.println("Could not terminate worker dispatchers");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    failPending(new InterruptedException("Mapper is closed"));
+  }
+
+  private static class Call {
+
+    private final Object[] results;
+    private final CountDownLatch completion;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    Call(int size, int batchesNum) {
+      this.results = new Object[size];
+      this.completion = new CountDownLatch(batchesNum);
+    }
+
+    void fail(Throwable e) {
+      error.compareAndSet(null, e);
+    }
+  }
+
+  private static class Batch {
+
+    private final Call call;
+    private final int from;
+    private final byte[] payload;
+    private int attempts = 0;
+
+    Batch(Call call, int from, byte[] payload) {
+      this.call = call;
+      this.from = from;
+      this.payload = payload;
+    }
+
+    void complete(Object reply) {
+      if (reply instanceof Throwable) {
+        call.fail((Throwable) reply);
+      } else {
+        List<?> results = (List<?>) reply;
+        for (int i = 0; i < results.size(); i++) {
+          call.results[from + i] = results.get(i);
+        }
+      }
+      call.completion.countDown();
+    }
+  }
+}
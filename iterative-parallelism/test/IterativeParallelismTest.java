@@ -1,13 +1,24 @@
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 import org.junit.Test;
 
@@ -63,4 +74,180 @@ public class IterativeParallelismTest {
 
     assertEquals(expected, actual);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testApproxDistinct() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 200_000)
+        .map(i -> random.nextInt(50_000))
+        .boxed()
+        .collect(toList());
+    long expected = values.stream().distinct().count();
+
+    long actual = new IterativeParallelism().approxDistinct(8, values);
+
+    assertTrue(expected + " ~ " + actual, Math.abs(actual - expected) < expected * 0.05);
+  }
+
+  @Test
+  public void testApproxQuantiles() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 100_000).boxed().collect(toList());
+    Collections.shuffle(values, random);
+
+    List<Integer> actual = new IterativeParallelism()
+        .approxQuantiles(8, values, Integer::compareTo, Arrays.asList(0.0, 0.5, 0.99, 1.0));
+
+    assertEquals(0, (int) actual.get(0));
+    assertTrue("median " + actual.get(1), Math.abs(actual.get(1) - 50_000) < 2_000);
+    assertTrue("p99 " + actual.get(2), Math.abs(actual.get(2) - 99_000) < 2_000);
+    assertEquals(99_999, (int) actual.get(3));
+  }
+
+  @Test
+  public void testMapWithDeadline() throws InterruptedException {
+    PartialResult<List<Integer>> actual =
+        new IterativeParallelism().map(8, ints, i -> i * 2, 1, TimeUnit.MINUTES);
+
+    assertTrue(actual.isComplete());
+    assertEquals(ints.stream().map(i -> i * 2).collect(toList()), actual.getValue());
+  }
+
+  @Test
+  public void testMapWithExpiredDeadline() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 1000).boxed().collect(toList());
+
+    PartialResult<List<Integer>> actual = new IterativeParallelism().map(4, values, i -> {
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return i;
+    }, 50, TimeUnit.MILLISECONDS);
+
+    assertFalse(actual.isComplete());
+    List<Integer> expected = actual.getCompletedRanges().stream()
+        .flatMap(r -> IntStream.range(r.getFrom(), r.getTo()).boxed())
+        .collect(toList());
+    // the first chunk is still running at the deadline, its prefix is kept all the same
+    assertFalse(actual.getCompletedRanges().isEmpty());
+    assertEquals(0, actual.getCompletedRanges().get(0).getFrom());
+    assertEquals(expected, actual.getValue());
+  }
+
+  @Test
+  public void testArgMinimumAndMaximum() throws InterruptedException {
+    List<Integer> values = Arrays.asList(5, 1, 7, 1, 7, 3, 0, 9, 0, 9, 4);
+
+    for (int threads = 1; threads <= 12; threads++) {
+      IterativeParallelism parallelism = new IterativeParallelism();
+      assertEquals(new IndexedValue<>(6, 0),
+          parallelism.argMinimum(threads, values, Integer::compareTo));
+      assertEquals(new IndexedValue<>(7, 9),
+          parallelism.argMaximum(threads, values, Integer::compareTo));
+      assertEquals(new IndexedValue<>(6, 0),
+          parallelism.argMinimum(threads, new LinkedList<>(values), Integer::compareTo));
+    }
+  }
+
+  @Test
+  public void testSort() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 10_000)
+        .map(i -> random.nextInt(1000))
+        .boxed()
+        .collect(toList());
+    // Comparing by tens only leaves plenty of ties, so any instability shows up
+    Comparator<Integer> byTens = Comparator.comparingInt(i -> i / 10);
+
+    List<Integer> expected = values.stream().sorted(byTens).collect(toList());
+
+    for (int threads = 1; threads <= 10; threads++) {
+      assertEquals(expected, new IterativeParallelism().sort(threads, values, byTens));
+    }
+  }
+
+  @Test
+  public void testCollectionSources() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 5_000)
+        .map(i -> random.nextInt(1000))
+        .boxed()
+        .collect(toList());
+    LinkedList<Integer> linkedList = new LinkedList<>(values);
+    LinkedHashSet<Integer> set = new LinkedHashSet<>(values);
+    CollectionParallelism parallelism = new CollectionParallelism();
+
+    assertEquals(values.stream().filter(i -> i > 500).collect(toList()),
+        parallelism.filter(8, linkedList, i -> i > 500));
+    assertEquals(values.stream().map(Object::toString).collect(joining()),
+        parallelism.join(8, linkedList.spliterator()));
+    assertEquals(new ArrayList<>(set), parallelism.map(8, set.stream().spliterator(), i -> i));
+    assertEquals(Collections.max(set), parallelism.maximum(8, set, Integer::compareTo));
+    assertTrue(parallelism.any(8, set, i -> i == values.get(0)));
+    assertFalse(parallelism.all(8, set, i -> i < 500));
+  }
+
+  @Test
+  public void testLinkedListIsShared() throws InterruptedException {
+    LinkedList<Integer> values =
+        IntStream.range(0, 100 * CollectionParallelism.BATCH_SIZE).boxed()
+            .collect(toCollection(LinkedList::new));
+    Map<Thread, Integer> batches = new ConcurrentHashMap<>();
+
+    new CollectionParallelism().map(8, values, i -> {
+      if (i % CollectionParallelism.BATCH_SIZE == 0) {
+        batches.merge(Thread.currentThread(), 1, Integer::sum);
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return i;
+    });
+
+    // trySplit of a linked list would leave most of it to the last part
+    assertTrue(batches.toString(), Collections.max(batches.values()) < 50);
+  }
+
+  @Test
+  public void testColumnarScans() throws InterruptedException {
+    ColumnarStore store = new ColumnarStore(16);
+    ColumnarStore.IntColumn ids = store.addIntColumn("id");
+    ColumnarStore.DoubleColumn latencies = store.addDoubleColumn("latency");
+    ColumnarStore.LongColumn sizes = store.addLongColumn("size");
+    for (int value : ints) {
+      int row = store.addRow();
+      ids.set(row, row);
+      latencies.set(row, value / 10.0);
+      sizes.set(row, -value * 1_000_000_000L);
+    }
+    ColumnarParallelism parallelism = new ColumnarParallelism();
+
+    int[] expected = IntStream.range(0, ints.size()).filter(row -> ints.get(row) > 500).toArray();
+    assertTrue(Arrays.equals(expected, parallelism.filter(8, latencies, l -> l > 50.0)));
+    assertEquals(expected.length, parallelism.count(8, latencies, l -> l > 50.0));
+    assertTrue(Arrays.equals(expected, parallelism.filter(3, sizes, s -> s < -500_000_000_000L)));
+    assertEquals(ints.size() > 0, parallelism.any(8, ids, id -> id == ints.size() - 1));
+    if (!ints.isEmpty()) {
+      assertEquals(Collections.min(ints) / 10.0, parallelism.minimum(8, latencies), 1e-9);
+      assertEquals(-Collections.max(ints) * 1_000_000_000L, parallelism.minimum(3, sizes));
+      assertEquals(0, parallelism.minimum(5, ids));
+    }
+  }
+
+  @Test
+  public void testTracing() throws InterruptedException {
+    ParallelismTracer tracer = new ParallelismTracer(2, false);
+    IterativeParallelism parallelism = new IterativeParallelism();
+    parallelism.setTracer(tracer);
+
+    parallelism.join(8, ints);
+    parallelism.filter(8, ints, i -> i > 500);
+    parallelism.map(8, ints, i -> i * 2);
+
+    List<ParallelismTracer.CallTrace> traces = tracer.snapshot();
+    assertEquals(Arrays.asList("filter", "map"),
+        traces.stream().map(ParallelismTracer.CallTrace::getOperation).collect(toList()));
+    assertEquals(ints.size(), Arrays.stream(traces.get(1).getChunkSizes()).sum());
+    assertTrue(tracer.toJson().startsWith("[{\"id\":1,"));
+  }
+}
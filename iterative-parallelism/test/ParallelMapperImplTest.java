@@ -0,0 +1,55 @@
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+// ParallelMapper.close() throws InterruptedException, which try-with-resources rethrows here
+@SuppressWarnings("try")
+public class ParallelMapperImplTest {
+
+  @Test
+  public void testElasticThreadsRetire() throws InterruptedException {
+    List<Integer> values = IntStream.range(0, 100).boxed().collect(toList());
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    try (ParallelMapperImpl mapper = new ParallelMapperImpl(4, 50, TimeUnit.MILLISECONDS)) {
+      List<Integer> actual = mapper.map(i -> {
+        threads.add(Thread.currentThread());
+        return i * 2;
+      }, values);
+
+      assertEquals(values.stream().map(i -> i * 2).collect(toList()), actual);
+      assertTrue(threads.size() + " threads", !threads.isEmpty() && threads.size() <= 4);
+
+      for (Thread thread : threads) {
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(thread.getName() + " is still alive", thread.isAlive());
+      }
+
+      // the pool grows back after retiring
+      assertEquals(values, mapper.map(i -> i, values));
+    }
+  }
+
+  @Test
+  public void testElasticPoolReusesIdleThreads() throws InterruptedException {
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    try (ParallelMapperImpl mapper = new ParallelMapperImpl(4, 10, TimeUnit.SECONDS)) {
+      for (int i = 0; i < 20; i++) {
+        mapper.map(x -> threads.add(Thread.currentThread()), Collections.singletonList(i));
+        // the thread of the previous call waits for work again
+        Thread.sleep(10);
+      }
+      assertEquals(1, threads.size());
+    }
+  }
+}
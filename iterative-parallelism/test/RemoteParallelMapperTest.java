@@ -0,0 +1,177 @@
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class RemoteParallelMapperTest {
+
+  private final List<Integer> values = IntStream.range(0, 100).boxed().collect(toList());
+
+  @Test(timeout = 60_000)
+  public void testOrderedResults() throws InterruptedException {
+    try (RemoteParallelMapper mapper = new RemoteParallelMapper(2)) {
+      List<Integer> actual = mapper.map((Function<Integer, Integer> & Serializable) i -> i * i,
+          values);
+
+      assertEquals(values.stream().map(i -> i * i).collect(toList()), actual);
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testWorkerExitsMidBatch() throws InterruptedException, IOException {
+    File marker = File.createTempFile("worker-exit", ".marker");
+    assertTrue(marker.delete());
+
+    try (RemoteParallelMapper mapper = new RemoteParallelMapper(2)) {
+      List<Integer> actual = mapper.map(new ExitOnce(marker.getPath(), 42), values);
+
+      assertTrue("no worker exited", marker.exists());
+      assertEquals(values.stream().map(i -> i + 1).collect(toList()), actual);
+    } finally {
+      marker.delete();
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testWorkerNeverConnects() throws InterruptedException {
+    try (RemoteParallelMapper mapper = new RemoteParallelMapper(1, SilentWorker.class, 500, 0)) {
+      mapper.map((Function<Integer, Integer> & Serializable) i -> i, values);
+      fail("map should fail without workers");
+    } catch (RuntimeException e) {
+      assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testHungWorkerTimesOut() throws InterruptedException, IOException {
+    File marker = File.createTempFile("worker-hang", ".marker");
+    assertTrue(marker.delete());
+
+    try (RemoteParallelMapper mapper = new RemoteParallelMapper(2, 1, TimeUnit.SECONDS)) {
+      List<Integer> actual = mapper.map(new HangOnce(marker.getPath(), 42), values);
+
+      assertTrue("no worker hung", marker.exists());
+      assertEquals(values.stream().map(i -> i + 1).collect(toList()), actual);
+    } finally {
+      marker.delete();
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testCloseKillsHungWorker() throws Exception {
+    File marker = File.createTempFile("worker-hang", ".marker");
+    assertTrue(marker.delete());
+
+    RemoteParallelMapper mapper = new RemoteParallelMapper(2);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread caller = new Thread(() -> {
+      try {
+        mapper.map(new HangOnce(marker.getPath(), 42), values);
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    caller.start();
+
+    try {
+      while (marker.length() == 0) {
+        Thread.sleep(10);
+      }
+      long pid = Long.parseLong(new String(Files.readAllBytes(marker.toPath()), UTF_8));
+
+      long start = System.nanoTime();
+      mapper.close();
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+
+      caller.join(TimeUnit.SECONDS.toMillis(5));
+      assertFalse("map is still running", caller.isAlive());
+      assertTrue(String.valueOf(failure.get()), failure.get() instanceof InterruptedException);
+
+      Optional<ProcessHandle> worker = ProcessHandle.of(pid);
+      if (worker.isPresent()) {
+        worker.get().onExit().get(5, TimeUnit.SECONDS);
+      }
+    } finally {
+      marker.delete();
+    }
+  }
+
+  // Kills the first worker that gets the trigger value, the marker file makes it happen once
+  private static class ExitOnce implements Function<Integer, Integer>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String marker;
+    private final int trigger;
+
+    ExitOnce(String marker, int trigger) {
+      this.marker = marker;
+      this.trigger = trigger;
+    }
+
+    @Override
+    public Integer apply(Integer value) {
+      try {
+        if (value == trigger && new File(marker).createNewFile()) {
+          System.exit(1);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return value + 1;
+    }
+  }
+
+  // Hangs the first worker that gets the trigger value, the marker file gets the pid of the worker
+  private static class HangOnce implements Function<Integer, Integer>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String marker;
+    private final int trigger;
+
+    HangOnce(String marker, int trigger) {
+      this.marker = marker;
+      this.trigger = trigger;
+    }
+
+    @Override
+    public Integer apply(Integer value) {
+      try {
+        if (value == trigger && new File(marker).createNewFile()) {
+          Files.write(Paths.get(marker),
+              Long.toString(ProcessHandle.current().pid()).getBytes(UTF_8));
+          Thread.sleep(Long.MAX_VALUE);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return value + 1;
+    }
+  }
+
+  public static class SilentWorker {
+
+    public static void main(String[] args) {
+      // exits without ever connecting back
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Downloader} that does not need a thread per download. {@link DownloadHandler} only uses
+ * downloader threads to start such downloads and to handle their results.
+ */
+public interface AsyncDownloader extends Downloader {
+
+  /**
+   * Starts download of url. The future fails with an {@link java.io.IOException} if the download
+   * fails.
+   */
+  CompletableFuture<Document> downloadAsync(String url);
+
+  /**
+   * Starts download of url, implementations may use its parsed parts.
+   */
+  default CompletableFuture<Document> downloadAsync(CanonicalUrl url) {
+    return downloadAsync(url.getUrl());
+  }
+}
@@ -0,0 +1,244 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AsyncDownloader} on {@link HttpClient#sendAsync}, so no thread waits for a response.
+ *
+ * <p>The client speaks HTTP/2 where the server supports it, multiplexing the requests of an origin
+ * over a single connection, and keeps HTTP/1.1 connections alive in its pool otherwise. At most
+ * {@code requestsPerOrigin} requests of an origin are sent at a time, the rest wait in the queue of
+ * the origin, which also bounds its HTTP/1.1 connections. Redirects are followed, any other non-2xx
+ * status is an error.
+ */
+public class AsyncHttpDownloader implements AsyncDownloader, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncHttpDownloader.class);
+
+  public static final int DEFAULT_REQUESTS_PER_ORIGIN = 8;
+  public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+  private final int requestsPerOrigin;
+  private final Duration timeout;
+  private final LinkExtractor linkExtractor;
+
+  private final ExecutorService clientThreads;
+  private final HttpClient client;
+  private final ConcurrentMap<String, Origin> origins = new ConcurrentHashMap<>();
+  private final Set<CompletableFuture<Document>> inFlight = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed = false;
+
+  public AsyncHttpDownloader() {
+    this(DEFAULT_REQUESTS_PER_ORIGIN, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public AsyncHttpDownloader(int requestsPerOrigin, long timeout, TimeUnit unit) {
+    this(requestsPerOrigin, timeout, unit, LinkExtractor.JSOUP);
+  }
+
+  /**
+   * @param timeout limit on connecting and on waiting for the response headers of a request.
+   */
+  public AsyncHttpDownloader(int requestsPerOrigin, long timeout, TimeUnit unit,
+      LinkExtractor linkExtractor) {
+    this.requestsPerOrigin = requestsPerOrigin;
+    this.timeout = Duration.ofNanos(unit.toNanos(timeout));
+    this.linkExtractor = linkExtractor;
+
+    clientThreads = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "HttpClient");
+      thread.setDaemon(true);
+      return thread;
+    });
+    client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(this.timeout)
+        .executor(clientThreads)
+        .build();
+  }
+
+  @Override
+  public Document download(String url) throws IOException {
+    try {
+      return downloadAsync(url).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted during download of " + url);
+    } catch (ExecutionException e) {
+      throw asIOException(e.getCause());
+    }
+  }
+
+  @Override
+  public CompletableFuture<Document> downloadAsync(String url) {
+    return downloadAsync(CanonicalUrl.of(url));
+  }
+
+  @Override
+  public CompletableFuture<Document> downloadAsync(CanonicalUrl url) {
+    CompletableFuture<Document> result = new CompletableFuture<>();
+    HttpRequest request;
+    try {
+      request = HttpRequest.newBuilder(url.getUri())
+          .timeout(timeout)
+          .header("Accept", "*/*")
+          .GET()
+          .build();
+    } catch (MalformedURLException e) {
+      result.completeExceptionally(e);
+      return result;
+    } catch (IllegalArgumentException e) {
+      // scheme other than http and https
+      result.completeExceptionally(new MalformedURLException(e.getMessage()));
+      return result;
+    }
+
+    inFlight.add(result);
+    result.whenComplete((document, error) -> inFlight.remove(result));
+    if (closed) {
+      result.completeExceptionally(new IOException("Downloader is closed"));
+      return result;
+    }
+
+    URI uri = request.uri();
+    origins.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(), k -> new Origin())
+        .submit(new Exchange(request, result));
+    return result;
+  }
+
+  /**
+   * Fails downloads that have not completed yet and stops the client threads.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    IOException closedError = new IOException("Downloader is closed");
+    new ArrayList<>(inFlight).forEach(result -> result.completeExceptionally(closedError));
+    clientThreads.shutdownNow();
+  }
+
+  private Document document(HttpResponse<byte[]> response) throws IOException {
+    int status = response.statusCode();
+    if (status < 200 || status >= 300) {
+      throw new IOException("HTTP " + status + " for " + response.uri());
+    }
+
+    // links are resolved against the url after redirects
+    URI uri = response.uri();
+    byte[] page = response.body();
+    return SizedDocument.of(page.length,
+        () -> linkExtractor.extractLinks(uri, new ByteArrayInputStream(page)));
+  }
+
+  private static IOException asIOException(Throwable e) {
+    if (e instanceof CompletionException && e.getCause() != null) {
+      e = e.getCause();
+    }
+    return e instanceof IOException ? (IOException) e : new IOException(e);
+  }
+
+  private class Origin {
+
+    private final Queue<Exchange> pending = new ArrayDeque<>();
+    private int active = 0;
+
+    void submit(Exchange exchange) {
+      synchronized (this) {
+        pending.add(exchange);
+      }
+      sendPending();
+    }
+
+    private void release() {
+      synchronized (this) {
+        active--;
+      }
+      sendPending();
+    }
+
+    private void sendPending() {
+      while (true) {
+        Exchange next;
+        synchronized (this) {
+          if (active >= requestsPerOrigin || (next = pending.poll()) == null) {
+            return;
+          }
+          active++;
+        }
+        if (!send(next)) {
+          synchronized (this) {
+            active--;
+          }
+        }
+      }
+    }
+
+    // returns whether a request was sent, its response releases the slot
+    private boolean send(Exchange exchange) {
+      if (exchange.result.isDone()) {
+        // failed by close while queued
+        return false;
+      }
+
+      log.debug("Send {}", exchange.request.uri());
+      CompletableFuture<HttpResponse<byte[]>> response;
+      try {
+        response = client.sendAsync(exchange.request, HttpResponse.BodyHandlers.ofByteArray());
+      } catch (RuntimeException e) {
+        // e.g. the client threads are shut down
+        exchange.result.completeExceptionally(asIOException(e));
+        return false;
+      }
+
+      response.whenComplete((received, error) -> {
+        release();
+        if (error != null) {
+          exchange.result.completeExceptionally(asIOException(error));
+          return;
+        }
+        try {
+          exchange.result.complete(document(received));
+        } catch (IOException e) {
+          exchange.result.completeExceptionally(e);
+        }
+      });
+      return true;
+    }
+  }
+
+  private static class Exchange {
+
+    private final HttpRequest request;
+    private final CompletableFuture<Document> result;
+
+    Exchange(HttpRequest request, CompletableFuture<Document> result) {
+      this.request = request;
+      this.result = result;
+    }
+  }
+}
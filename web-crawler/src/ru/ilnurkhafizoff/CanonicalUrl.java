@@ -0,0 +1,193 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Url passed through the crawl pipeline, parsed at most once.
+ *
+ * <p>The {@link URLUtils#getURI parsed form}, normalized form, host and 64-bit fingerprint are
+ * computed on first use and kept, so duplicate links rejected by the visited set are never parsed
+ * at all. Urls of a recently seen host share its host string, which keeps per-host map lookups
+ * cheap.
+ *
+ * <p>Urls are equal if their normalized forms are, so comparing or hashing one parses it. The
+ * visited sets and the fingerprint still use the url as found, like the results of a crawl.
+ */
+public final class CanonicalUrl {
+
+  // direct-mapped: a host takes over the slot of its hash, so hosts in use keep their slots
+  private static final int HOST_SLOTS = 4096;
+  private static final AtomicReferenceArray<String> HOSTS = new AtomicReferenceArray<>(HOST_SLOTS);
+
+  private final String url;
+
+  // computed at most once per thread, every thread gets an equal value
+  private volatile Parsed parsed;
+  private volatile long fingerprint;
+
+  private CanonicalUrl(String url) {
+    this.url = url;
+  }
+
+  public static CanonicalUrl of(String url) {
+    return new CanonicalUrl(url);
+  }
+
+  /**
+   * Returns url as it was found, e.g. for results and {@link
+   * info.kgeorgiy.java.advanced.crawler.Downloader}s.
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns the normalized url, see {@link #getNormalized()}.
+   */
+  public URI getUri() throws MalformedURLException {
+    return parsed().uri();
+  }
+
+  /**
+   * Returns url with lower case scheme and host, without default port and fragment, and with
+   * non-empty path without dot segments. Malformed url is returned as found.
+   */
+  public String getNormalized() {
+    Parsed result = parsed();
+    return result.error == null ? result.uri.toString() : url;
+  }
+
+  /**
+   * Returns lower case host of the url.
+   */
+  public String getHost() throws MalformedURLException {
+    return parsed().host();
+  }
+
+  public long getFingerprint() {
+    long result = fingerprint;
+    if (result == 0) {
+      // fingerprints are never 0
+      fingerprint = result = FingerprintVisitedUrls.fingerprint(url);
+    }
+    return result;
+  }
+
+  private Parsed parsed() {
+    Parsed result = parsed;
+    if (result == null) {
+      parsed = result = parse(url);
+    }
+    return result;
+  }
+
+  private static Parsed parse(String url) {
+    try {
+      URI uri = normalize(URLUtils.getURI(url));
+      return new Parsed(uri, cachedHost(uri.getHost()), null);
+    } catch (MalformedURLException e) {
+      return new Parsed(null, null, e.getMessage());
+    }
+  }
+
+  private static URI normalize(URI uri) throws MalformedURLException {
+    String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+    if (uri.getHost() == null) {
+      // registry based authority, e.g. a host name with '_', is kept as found
+      return URI.create(scheme + uri.toString().substring(scheme.length())).normalize();
+    }
+
+    StringBuilder result = new StringBuilder(scheme).append("://");
+    if (uri.getRawUserInfo() != null) {
+      result.append(uri.getRawUserInfo()).append('@');
+    }
+    result.append(uri.getHost().toLowerCase(Locale.ROOT));
+    int port = uri.getPort();
+    if (port >= 0 && port != defaultPort(scheme)) {
+      result.append(':').append(port);
+    }
+    result.append(uri.getRawPath());
+    if (uri.getRawQuery() != null) {
+      result.append('?').append(uri.getRawQuery());
+    }
+
+    try {
+      return new URI(result.toString()).normalize();
+    } catch (URISyntaxException e) {
+      throw new MalformedURLException(e.getMessage());
+    }
+  }
+
+  private static int defaultPort(String scheme) {
+    switch (scheme) {
+      case "http":
+        return 80;
+      case "https":
+        return 443;
+      default:
+        return -1;
+    }
+  }
+
+  private static String cachedHost(String host) {
+    if (host == null) {
+      return null;
+    }
+    int slot = host.hashCode() & (HOST_SLOTS - 1);
+    String cached = HOSTS.get(slot);
+    if (host.equals(cached)) {
+      return cached;
+    }
+    HOSTS.set(slot, host);
+    return host;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o
+        || o instanceof CanonicalUrl && getNormalized().equals(((CanonicalUrl) o).getNormalized());
+  }
+
+  @Override
+  public int hashCode() {
+    return getNormalized().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return url;
+  }
+
+  private static class Parsed {
+
+    private final URI uri;
+    private final String host;
+    // message of the parse error, every caller gets its own exception
+    private final String error;
+
+    Parsed(URI uri, String host, String error) {
+      this.uri = uri;
+      this.host = host;
+      this.error = error;
+    }
+
+    URI uri() throws MalformedURLException {
+      if (error != null) {
+        throw new MalformedURLException(error);
+      }
+      return uri;
+    }
+
+    String host() throws MalformedURLException {
+      if (error != null) {
+        throw new MalformedURLException(error);
+      }
+      return host;
+    }
+  }
+}
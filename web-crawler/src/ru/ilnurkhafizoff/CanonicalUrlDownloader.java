@@ -0,0 +1,19 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import java.io.IOException;
+
+/**
+ * {@link Downloader} taking a {@link CanonicalUrl}, so the url parsed by {@link DownloadHandler}
+ * for its host is not parsed again.
+ */
+public interface CanonicalUrlDownloader extends Downloader {
+
+  Document download(CanonicalUrl url) throws IOException;
+
+  @Override
+  default Document download(String url) throws IOException {
+    return download(CanonicalUrl.of(url));
+  }
+}
@@ -0,0 +1,393 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk frontier and visited log of a single crawl, kept so the crawl can be resumed after a
+ * crash or restart.
+ *
+ * <p>Every accepted url is appended to {@code frontier.log} in crawl order. The log doubles as the
+ * frontier queue: nodes are read back from it through a cursor, at most {@code maxInFlight} of
+ * them at a time, so memory stays bounded however large the frontier grows. Every finished page
+ * is appended to {@code done.log}. Records are text lines, a torn last line left by a crash is cut
+ * off when the journal is opened again. The frontier is always written out before the done log, so
+ * the children of a page, appended before the page is finished, reach the file before its record.
+ *
+ * <p>Every {@value #CHECKPOINT_RECORDS} finished pages both logs are forced to disk and the offset
+ * of the oldest unfinished frontier record is saved to {@code checkpoint}. A resumed crawl
+ * rebuilds its visited set from the frontier, skips finished pages and dispatches the rest from
+ * that offset. Pages finished after the last checkpoint may be downloaded again.
+ *
+ * <p>The journal itself holds at most {@code maxInFlight} urls in memory, plus a fingerprint of
+ * every page finished before a resume, 10 to 21 bytes off-heap each. The visited set of the crawl
+ * still gets every accepted url, so it costs as much per url as without a journal, e.g. as little
+ * as a fingerprint with {@link VisitedUrls#fingerprints()}.
+ */
+public class CrawlJournal implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(CrawlJournal.class);
+
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4096;
+
+  private static final int CHECKPOINT_RECORDS = 1024;
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final String CRAWL = "crawl";
+  private static final String FRONTIER = "frontier.log";
+  private static final String DONE = "done.log";
+  private static final String CHECKPOINT = "checkpoint";
+
+  private final Path directory;
+  private final int maxInFlight;
+
+  private final Log frontier;
+  private final Log done;
+
+  // urls finished before this run, null for a fresh crawl
+  private FingerprintVisitedUrls finishedBefore;
+
+  private long cursor;
+  // grows to hold the longest frontier record read so far
+  private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_BYTES);
+  private long readBufferOffset;
+  private long nextCursor;
+
+  // frontier offsets of dispatched but unfinished nodes, the first one is the checkpoint
+  private final TreeMap<Long, String> inFlightOffsets = new TreeMap<>();
+  private final Map<String, Long> inFlightUrls = new HashMap<>();
+  private long finishedSinceCheckpoint;
+
+  public CrawlJournal(Path directory) throws IOException {
+    this(directory, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * @param maxInFlight nodes dispatched from the frontier at once.
+   */
+  public CrawlJournal(Path directory, int maxInFlight) throws IOException {
+    this(directory, maxInFlight, BUFFER_BYTES);
+  }
+
+  // flushBytes is lowered by tests to write records out as they come
+  CrawlJournal(Path directory, int maxInFlight, int flushBytes) throws IOException {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight should be positive");
+    }
+
+    Files.createDirectories(directory);
+    this.directory = directory;
+    this.maxInFlight = maxInFlight;
+    this.frontier = new Log(directory.resolve(FRONTIER), flushBytes, null);
+    this.done = new Log(directory.resolve(DONE), flushBytes, frontier);
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * Returns whether {@link #resume} loaded the journal of an earlier run.
+   */
+  public synchronized boolean isResumed() {
+    return finishedBefore != null;
+  }
+
+  /**
+   * Loads the journal of a crawl from url to maxDepth. Urls of the frontier are added to visited,
+   * pages finished before are reported to listener again.
+   *
+   * @return number of unfinished urls in the frontier, zero for a fresh journal.
+   * @throws IllegalArgumentException if the journal belongs to another crawl.
+   */
+  public synchronized int resume(String url, int maxDepth, VisitedUrls visited,
+      CrawlListener listener) throws IOException {
+    Path crawl = directory.resolve(CRAWL);
+    List<String> expected = Arrays.asList(url, Integer.toString(maxDepth));
+    if (!Files.exists(crawl)) {
+      frontier.truncate();
+      done.truncate();
+      Files.deleteIfExists(directory.resolve(CHECKPOINT));
+      Files.write(crawl, expected, UTF_8);
+      return 0;
+    }
+    if (!Files.readAllLines(crawl, UTF_8).equals(expected)) {
+      throw new IllegalArgumentException(
+          "Journal " + directory + " belongs to another crawl: " + Files.readAllLines(crawl, UTF_8));
+    }
+
+    FingerprintVisitedUrls finished = new FingerprintVisitedUrls();
+    done.readAll(record -> {
+      // D depth url, or E depth url error
+      String[] fields = record.split("\t", 4);
+      if (fields.length < 3 || !finished.add(fields[2])) {
+        return;
+      }
+      if (fields[0].equals("D")) {
+        listener.onDownloaded(fields[2], Integer.parseInt(fields[1]));
+      } else {
+        listener.onError(fields[2], new IOException(fields.length > 3 ? fields[3] : ""));
+      }
+    });
+
+    int[] pending = {0};
+    frontier.readAll(record -> {
+      String recordUrl = record.substring(record.indexOf('\t') + 1);
+      visited.add(CanonicalUrl.of(recordUrl));
+      if (!finished.contains(recordUrl)) {
+        pending[0]++;
+      }
+    });
+    finishedBefore = finished;
+
+    Path checkpoint = directory.resolve(CHECKPOINT);
+    if (Files.exists(checkpoint)) {
+      cursor = Math.min(Long.parseLong(Files.readAllLines(checkpoint, UTF_8).get(0).trim()),
+          frontier.size());
+    }
+    log.info("Resume crawl from {}: {} pages finished, {} pending",
+        url, finished.size(), pending[0]);
+    return pending[0];
+  }
+
+  /**
+   * Appends an accepted node to the frontier.
+   */
+  public synchronized void append(Node node) throws IOException {
+    frontier.append(node.getNodeDepth() + "\t" + node.getUrl());
+  }
+
+  /**
+   * Reads the next unfinished node from the frontier and marks it in flight.
+   *
+   * @return next node, or {@code null} if none is left.
+   */
+  public synchronized Node next() throws IOException {
+    while (true) {
+      frontier.flushUpTo(cursor);
+      String record = readRecord();
+      if (record == null) {
+        return null;
+      }
+
+      int tab = record.indexOf('\t');
+      String url = record.substring(tab + 1);
+      long offset = cursor;
+      cursor = nextCursor;
+      if (finishedBefore != null && finishedBefore.contains(url)) {
+        continue;
+      }
+
+      inFlightOffsets.put(offset, url);
+      inFlightUrls.put(url, offset);
+      return new Node(CanonicalUrl.of(url), Integer.parseInt(record.substring(0, tab)));
+    }
+  }
+
+  /**
+   * Records the node as downloaded, or failed with error.
+   */
+  public synchronized void finished(Node node, IOException error) throws IOException {
+    String record = (error == null ? "D\t" : "E\t") + node.getNodeDepth() + "\t" + node.getUrl();
+    if (error != null) {
+      record += "\t" + error.toString().replaceAll("[\t\r\n]", " ");
+    }
+    done.append(record);
+
+    Long offset = inFlightUrls.remove(node.getUrl());
+    if (offset != null) {
+      inFlightOffsets.remove(offset);
+    }
+    if (++finishedSinceCheckpoint >= CHECKPOINT_RECORDS) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Forces both logs to disk and saves the offset resumed crawls dispatch from.
+   */
+  public synchronized void checkpoint() throws IOException {
+    frontier.force();
+    done.force();
+
+    long offset = inFlightOffsets.isEmpty() ? cursor : inFlightOffsets.firstKey();
+    Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+    Files.write(temporary, Arrays.asList(Long.toString(offset)), UTF_8);
+    Files.move(temporary, directory.resolve(CHECKPOINT),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    finishedSinceCheckpoint = 0;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      checkpoint();
+    } finally {
+      frontier.close();
+      done.close();
+    }
+  }
+
+  // Returns the complete frontier record at cursor and sets nextCursor past it, or returns null at
+  // the end of the flushed log
+  private String readRecord() throws IOException {
+    int start = (int) (cursor - readBufferOffset);
+    if (cursor < readBufferOffset || start > readBuffer.limit()) {
+      start = readBuffer.limit();
+    }
+    int end = indexOfNewline(start);
+    if (end < 0) {
+      fillReadBuffer();
+      start = 0;
+      end = indexOfNewline(0);
+      while (end < 0 && readBuffer.limit() == readBuffer.capacity()) {
+        // the record is longer than the buffer
+        readBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+        fillReadBuffer();
+        end = indexOfNewline(0);
+      }
+      if (end < 0) {
+        return null;
+      }
+    }
+    nextCursor = readBufferOffset + end + 1;
+    return new String(readBuffer.array(), start, end - start, UTF_8);
+  }
+
+  // Reads the frontier from cursor until the buffer is full or the flushed log ends
+  private void fillReadBuffer() throws IOException {
+    readBuffer.clear();
+    readBufferOffset = cursor;
+    int read;
+    do {
+      read = frontier.channel.read(readBuffer, readBufferOffset + readBuffer.position());
+    } while (read > 0 && readBuffer.hasRemaining());
+    readBuffer.flip();
+  }
+
+  private int indexOfNewline(int from) {
+    for (int i = from; i < readBuffer.limit(); i++) {
+      if (readBuffer.get(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Append-only file of newline-terminated records, buffered in memory up to {@code flushBytes}.
+   */
+  private static class Log implements Closeable {
+
+    private final FileChannel channel;
+    private final int flushBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private long flushed;
+
+    // flushed before every flush of this log, null if none
+    private final Log before;
+
+    Log(Path file, int flushBytes, Log before) throws IOException {
+      channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.flushBytes = flushBytes;
+      this.before = before;
+      flushed = channel.size();
+    }
+
+    long size() {
+      return flushed + buffer.size();
+    }
+
+    // Streams all complete records and cuts off a torn last record
+    void readAll(Consumer<String> consumer) throws IOException {
+      ByteBuffer chunk = ByteBuffer.allocate(BUFFER_BYTES);
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      long position = 0;
+      long end = 0;
+      while (channel.read(chunk, position) > 0) {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+          byte b = chunk.get();
+          position++;
+          if (b == '\n') {
+            consumer.accept(new String(record.toByteArray(), UTF_8));
+            record.reset();
+            end = position;
+          } else {
+            record.write(b);
+          }
+        }
+        chunk.clear();
+      }
+
+      if (end < position) {
+        log.warn("Cut off torn record of {} bytes", position - end);
+        channel.truncate(end);
+      }
+      flushed = end;
+    }
+
+    void truncate() throws IOException {
+      channel.truncate(0);
+      buffer.reset();
+      flushed = 0;
+    }
+
+    void append(String record) throws IOException {
+      byte[] bytes = (record + "\n").getBytes(UTF_8);
+      buffer.write(bytes, 0, bytes.length);
+      if (buffer.size() >= flushBytes) {
+        flush();
+      }
+    }
+
+    // Makes records up to offset readable from the channel
+    void flushUpTo(long offset) throws IOException {
+      if (offset >= flushed && buffer.size() > 0) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      if (buffer.size() == 0) {
+        return;
+      }
+      if (before != null) {
+        before.flush();
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+      while (bytes.hasRemaining()) {
+        flushed += channel.write(bytes, flushed);
+      }
+      buffer.reset();
+    }
+
+    void force() throws IOException {
+      flush();
+      channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package ru.ilnurkhafizoff;
+
+import java.io.IOException;
+
+/**
+ * Receives crawl events as pages complete. Methods are called concurrently from crawler threads
+ * and should return quickly, a slow listener holds up the crawl.
+ */
+public interface CrawlListener {
+
+  /**
+   * Page at url was downloaded and, unless depth is the last one, its links were extracted.
+   *
+   * @param depth depth of the page, the root url has depth 1.
+   */
+  void onDownloaded(String url, int depth);
+
+  /**
+   * Page at url could not be downloaded or its links could not be extracted.
+   */
+  void onError(String url, IOException e);
+}
@@ -0,0 +1,408 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics registry of a crawler.
+ *
+ * <p>Events only increment {@link LongAdder}s and histogram buckets, so recording never contends
+ * on a lock. Gauges, i.e. per-host load and executor queues, are read from their sources when a
+ * {@link #snapshot()} or a JMX attribute is taken and cost nothing in between.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+
+  private static final Logger log = LoggerFactory.getLogger(CrawlMetrics.class);
+
+  private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final LongAdder pagesDownloaded = new LongAdder();
+  private final LongAdder bytesDownloaded = new LongAdder();
+  private final LongAdder downloadErrors = new LongAdder();
+  private final LongAdder extractErrors = new LongAdder();
+  private final ConcurrentMap<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+
+  private final LatencyHistogram downloadLatency = new LatencyHistogram();
+  private final LatencyHistogram extractLatency = new LatencyHistogram();
+
+  // gauge sources, set once by the crawler
+  private volatile DownloadHandler hosts;
+  private volatile ExecutorService downloaders;
+  private volatile ExecutorService extractors;
+
+  private RateSample rateSample = new RateSample(System.nanoTime(), 0, 0, 0, 0);
+  private ObjectName objectName;
+
+  void downloaded(long latencyNanos, Document document) {
+    downloadLatency.record(latencyNanos);
+    pagesDownloaded.increment();
+    if (document instanceof SizedDocument) {
+      bytesDownloaded.add(((SizedDocument) document).getBytes());
+    }
+  }
+
+  void downloadFailed(long latencyNanos, Throwable error) {
+    downloadLatency.record(latencyNanos);
+    downloadErrors.increment();
+    countError(error);
+  }
+
+  void extracted(long latencyNanos) {
+    extractLatency.record(latencyNanos);
+  }
+
+  void extractFailed(long latencyNanos, Throwable error) {
+    extractLatency.record(latencyNanos);
+    extractErrors.increment();
+    countError(error);
+  }
+
+  private void countError(Throwable error) {
+    String type = error.getClass().getName();
+    LongAdder counter = errorsByType.get(type);
+    if (counter == null) {
+      counter = errorsByType.computeIfAbsent(type, t -> new LongAdder());
+    }
+    counter.increment();
+  }
+
+  void watch(DownloadHandler hosts, ExecutorService downloaders, ExecutorService extractors) {
+    this.hosts = hosts;
+    this.downloaders = downloaders;
+    this.extractors = extractors;
+  }
+
+  /**
+   * Registers these metrics with the platform MBean server under {@code
+   * ru.ilnurkhafizoff:type=WebCrawler,name=<name>}. Failures are logged, metrics stay usable
+   * through {@link #snapshot()}.
+   */
+  public synchronized void register(String name) {
+    try {
+      objectName =
+          new ObjectName("ru.ilnurkhafizoff:type=WebCrawler,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    } catch (JMException e) {
+      log.warn("Could not register crawler metrics {}", name, e);
+      objectName = null;
+    }
+  }
+
+  public synchronized ObjectName getObjectName() {
+    return objectName;
+  }
+
+  public synchronized void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      log.warn("Could not unregister crawler metrics {}", objectName, e);
+    }
+    objectName = null;
+  }
+
+  /**
+   * Returns current values of all metrics.
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  @Override
+  public long getPagesDownloaded() {
+    return pagesDownloaded.sum();
+  }
+
+  @Override
+  public long getBytesDownloaded() {
+    return bytesDownloaded.sum();
+  }
+
+  @Override
+  public long getDownloadErrors() {
+    return downloadErrors.sum();
+  }
+
+  @Override
+  public long getExtractErrors() {
+    return extractErrors.sum();
+  }
+
+  @Override
+  public double getPagesPerSecond() {
+    return rates().pagesPerSecond;
+  }
+
+  @Override
+  public double getBytesPerSecond() {
+    return rates().bytesPerSecond;
+  }
+
+  @Override
+  public Map<String, Long> getErrorsByType() {
+    Map<String, Long> result = new TreeMap<>();
+    errorsByType.forEach((type, count) -> result.put(type, count.sum()));
+    return result;
+  }
+
+  @Override
+  public Map<String, Integer> getInFlightByHost() {
+    DownloadHandler source = hosts;
+    return source == null ? Collections.emptyMap() : source.getInFlightByHost();
+  }
+
+  @Override
+  public Map<String, Integer> getQueuedByHost() {
+    DownloadHandler source = hosts;
+    return source == null ? Collections.emptyMap() : source.getQueuedByHost();
+  }
+
+  @Override
+  public int getDownloadQueueDepth() {
+    return queueDepth(downloaders);
+  }
+
+  @Override
+  public int getExtractQueueDepth() {
+    return queueDepth(extractors);
+  }
+
+  @Override
+  public int getActiveDownloadThreads() {
+    return activeThreads(downloaders);
+  }
+
+  @Override
+  public int getActiveExtractThreads() {
+    return activeThreads(extractors);
+  }
+
+  private static int queueDepth(ExecutorService executor) {
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+    if (executor instanceof ThreadPerTaskExecutor) {
+      return ((ThreadPerTaskExecutor) executor).getQueued();
+    }
+    return 0;
+  }
+
+  private static int activeThreads(ExecutorService executor) {
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getActiveCount();
+    }
+    if (executor instanceof ThreadPerTaskExecutor) {
+      return ((ThreadPerTaskExecutor) executor).getRunning();
+    }
+    return 0;
+  }
+
+  @Override
+  public double getDownloadLatencyMeanMillis() {
+    return downloadLatency.getMeanNanos() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getDownloadLatencyP50Millis() {
+    return downloadLatency.getPercentileNanos(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getDownloadLatencyP99Millis() {
+    return downloadLatency.getPercentileNanos(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getExtractLatencyMeanMillis() {
+    return extractLatency.getMeanNanos() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getExtractLatencyP50Millis() {
+    return extractLatency.getPercentileNanos(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getExtractLatencyP99Millis() {
+    return extractLatency.getPercentileNanos(99) / NANOS_PER_MILLI;
+  }
+
+  public LatencyHistogram getDownloadLatency() {
+    return downloadLatency;
+  }
+
+  public LatencyHistogram getExtractLatency() {
+    return extractLatency;
+  }
+
+  // rates since the previous sample, a new sample is taken at most once per interval
+  private synchronized RateSample rates() {
+    long now = System.nanoTime();
+    if (now - rateSample.time >= RATE_INTERVAL_NANOS) {
+      long pages = pagesDownloaded.sum();
+      long bytes = bytesDownloaded.sum();
+      double seconds = (now - rateSample.time) / (double) TimeUnit.SECONDS.toNanos(1);
+      rateSample = new RateSample(now, pages, bytes,
+          (pages - rateSample.pages) / seconds, (bytes - rateSample.bytes) / seconds);
+    }
+    return rateSample;
+  }
+
+  private static class RateSample {
+
+    private final long time;
+    private final long pages;
+    private final long bytes;
+    private final double pagesPerSecond;
+    private final double bytesPerSecond;
+
+    RateSample(long time, long pages, long bytes, double pagesPerSecond, double bytesPerSecond) {
+      this.time = time;
+      this.pages = pages;
+      this.bytes = bytes;
+      this.pagesPerSecond = pagesPerSecond;
+      this.bytesPerSecond = bytesPerSecond;
+    }
+  }
+
+  /**
+   * Values of all metrics at one moment.
+   */
+  public static class Snapshot {
+
+    private final long pagesDownloaded;
+    private final long bytesDownloaded;
+    private final long downloadErrors;
+    private final long extractErrors;
+    private final double pagesPerSecond;
+    private final double bytesPerSecond;
+    private final Map<String, Long> errorsByType;
+    private final Map<String, Integer> inFlightByHost;
+    private final Map<String, Integer> queuedByHost;
+    private final int downloadQueueDepth;
+    private final int extractQueueDepth;
+    private final int activeDownloadThreads;
+    private final int activeExtractThreads;
+    private final double downloadLatencyP50Millis;
+    private final double downloadLatencyP99Millis;
+    private final double extractLatencyP50Millis;
+    private final double extractLatencyP99Millis;
+
+    private Snapshot(CrawlMetrics metrics) {
+      pagesDownloaded = metrics.getPagesDownloaded();
+      bytesDownloaded = metrics.getBytesDownloaded();
+      downloadErrors = metrics.getDownloadErrors();
+      extractErrors = metrics.getExtractErrors();
+      pagesPerSecond = metrics.getPagesPerSecond();
+      bytesPerSecond = metrics.getBytesPerSecond();
+      errorsByType = Collections.unmodifiableMap(metrics.getErrorsByType());
+      inFlightByHost = Collections.unmodifiableMap(metrics.getInFlightByHost());
+      queuedByHost = Collections.unmodifiableMap(metrics.getQueuedByHost());
+      downloadQueueDepth = metrics.getDownloadQueueDepth();
+      extractQueueDepth = metrics.getExtractQueueDepth();
+      activeDownloadThreads = metrics.getActiveDownloadThreads();
+      activeExtractThreads = metrics.getActiveExtractThreads();
+      downloadLatencyP50Millis = metrics.getDownloadLatencyP50Millis();
+      downloadLatencyP99Millis = metrics.getDownloadLatencyP99Millis();
+      extractLatencyP50Millis = metrics.getExtractLatencyP50Millis();
+      extractLatencyP99Millis = metrics.getExtractLatencyP99Millis();
+    }
+
+    public long getPagesDownloaded() {
+      return pagesDownloaded;
+    }
+
+    public long getBytesDownloaded() {
+      return bytesDownloaded;
+    }
+
+    public long getDownloadErrors() {
+      return downloadErrors;
+    }
+
+    public long getExtractErrors() {
+      return extractErrors;
+    }
+
+    public double getPagesPerSecond() {
+      return pagesPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+      return bytesPerSecond;
+    }
+
+    public Map<String, Long> getErrorsByType() {
+      return errorsByType;
+    }
+
+    public Map<String, Integer> getInFlightByHost() {
+      return inFlightByHost;
+    }
+
+    public Map<String, Integer> getQueuedByHost() {
+      return queuedByHost;
+    }
+
+    public int getDownloadQueueDepth() {
+      return downloadQueueDepth;
+    }
+
+    public int getExtractQueueDepth() {
+      return extractQueueDepth;
+    }
+
+    public int getActiveDownloadThreads() {
+      return activeDownloadThreads;
+    }
+
+    public int getActiveExtractThreads() {
+      return activeExtractThreads;
+    }
+
+    public double getDownloadLatencyP50Millis() {
+      return downloadLatencyP50Millis;
+    }
+
+    public double getDownloadLatencyP99Millis() {
+      return downloadLatencyP99Millis;
+    }
+
+    public double getExtractLatencyP50Millis() {
+      return extractLatencyP50Millis;
+    }
+
+    public double getExtractLatencyP99Millis() {
+      return extractLatencyP99Millis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d pages (%.1f/s), %d bytes (%.0f/s), %d download errors, "
+              + "%d extract errors, download p50/p99 %.1f/%.1f ms, extract p50/p99 %.1f/%.1f ms, "
+              + "queues %d/%d, active threads %d/%d, in flight %s, queued %s, errors %s",
+          pagesDownloaded, pagesPerSecond, bytesDownloaded, bytesPerSecond, downloadErrors,
+          extractErrors, downloadLatencyP50Millis, downloadLatencyP99Millis,
+          extractLatencyP50Millis, extractLatencyP99Millis, downloadQueueDepth,
+          extractQueueDepth, activeDownloadThreads, activeExtractThreads, inFlightByHost,
+          queuedByHost, errorsByType);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package ru.ilnurkhafizoff;
+
+import java.util.Map;
+
+/**
+ * Live counters of a {@link WebCrawler}, registered with the platform MBean server by {@link
+ * WebCrawler#registerMBean()}.
+ */
+public interface CrawlMetricsMXBean {
+
+  long getPagesDownloaded();
+
+  long getBytesDownloaded();
+
+  long getDownloadErrors();
+
+  long getExtractErrors();
+
+  /**
+   * Returns pages downloaded per second since the previous rate sample, taken at most once a
+   * second.
+   */
+  double getPagesPerSecond();
+
+  double getBytesPerSecond();
+
+  /**
+   * Returns failed downloads and extractions by exception class.
+   */
+  Map<String, Long> getErrorsByType();
+
+  /**
+   * Returns running downloads of every busy host.
+   */
+  Map<String, Integer> getInFlightByHost();
+
+  /**
+   * Returns downloads waiting for a slot or a rate token, by host.
+   */
+  Map<String, Integer> getQueuedByHost();
+
+  int getDownloadQueueDepth();
+
+  int getExtractQueueDepth();
+
+  int getActiveDownloadThreads();
+
+  int getActiveExtractThreads();
+
+  double getDownloadLatencyMeanMillis();
+
+  double getDownloadLatencyP50Millis();
+
+  double getDownloadLatencyP99Millis();
+
+  double getExtractLatencyMeanMillis();
+
+  double getExtractLatencyP50Millis();
+
+  double getExtractLatencyP99Millis();
+}
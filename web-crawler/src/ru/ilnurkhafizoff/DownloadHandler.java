@@ -2,48 +2,349 @@ package ru.ilnurkhafizoff;
 
 import info.kgeorgiy.java.advanced.crawler.Document;
 import info.kgeorgiy.java.advanced.crawler.Downloader;
-import info.kgeorgiy.java.advanced.crawler.URLUtils;
 import java.io.IOException;
-import java.util.HashMap;
+import java.net.MalformedURLException;
+import java.util.ArrayDeque;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DownloadHandler {
+/**
+ * Runs downloads on the downloader pool, at most {@code perHostMax} at a time for every host.
+ *
+ * <p>Urls of a host without a free slot wait in the ready queue of that host instead of parking a
+ * downloader thread. A finished download hands its slot straight to the next queued url of the
+ * same host, so downloader threads only ever take urls they can download right away.
+ *
+ * <p>{@link HostLimits} may further limit the request rate of every host and let its concurrency
+ * adapt below {@code perHostMax}, see {@link HostLimiter}. A host out of rate tokens is pumped
+ * again by a timer once its next token is due.
+ *
+ * <p>With an {@link AsyncDownloader} a host slot is held until the download future completes,
+ * while downloader threads only start downloads and run the callbacks.
+ */
+public class DownloadHandler implements AutoCloseable {
 
   Logger logger = LoggerFactory.getLogger(DownloadHandler.class);
 
-  private final ConcurrentMap<String, Semaphore> perHostDownloadSemaphors = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
 
   private final Downloader downloader;
+  private final ExecutorService downloaders;
   private final int perHostMax;
+  private final HostLimits hostLimits;
+  private final CrawlMetrics metrics;
 
-  public DownloadHandler(Downloader downloader, int perHostMax) {
+  // wakes up rate limited hosts, null without a rate limit
+  private final ScheduledExecutorService timer;
+
+  public DownloadHandler(Downloader downloader, ExecutorService downloaders, int perHostMax) {
+    this(downloader, downloaders, perHostMax, HostLimits.fixed(), new CrawlMetrics());
+  }
+
+  public DownloadHandler(Downloader downloader, ExecutorService downloaders, int perHostMax,
+      HostLimits hostLimits, CrawlMetrics metrics) {
     this.downloader = downloader;
+    this.downloaders = downloaders;
     this.perHostMax = perHostMax;
-  }
+    this.hostLimits = hostLimits;
+    this.metrics = metrics;
 
-  public Document download(String url) throws IOException, InterruptedException {
-    String host = URLUtils.getHost(url);
+    if (hostLimits.isRateLimited()) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "HostRateTimer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      timer = executor;
+    } else {
+      timer = null;
+    }
+  }
 
-    perHostDownloadSemaphors.computeIfAbsent(host, h -> new Semaphore(perHostMax));
+  /**
+   * Schedules download of url. Exactly one of the callbacks is called, on a downloader thread
+   * unless the url is malformed or the downloaders are shut down.
+   *
+   * @param onDownloaded receives downloaded document, the host slot is already released.
+   * @param onError receives download error.
+   * @param onRejected called if the downloaders were shut down before the download started.
+   */
+  public void download(String url, Consumer<Document> onDownloaded,
+      Consumer<IOException> onError, Runnable onRejected) {
+    download(CanonicalUrl.of(url), onDownloaded, onError, onRejected);
+  }
 
-    Document document;
+  /**
+   * Schedules download of url like {@link #download(String, Consumer, Consumer, Runnable)},
+   * reusing its parsed host.
+   */
+  public void download(CanonicalUrl url, Consumer<Document> onDownloaded,
+      Consumer<IOException> onError, Runnable onRejected) {
+    String host;
     try {
-      logger.debug("Try acquire sem for '{}' url", url);
-      perHostDownloadSemaphors.get(host).acquire();
-      logger.debug("Acquired sem for '{}' url", url);
+      host = url.getHost();
+    } catch (MalformedURLException e) {
+      onError.accept(e);
+      return;
+    }
+
+    hostQueues.computeIfAbsent(host, h -> new HostQueue())
+        .submit(new DownloadTask(url, onDownloaded, onError, onRejected));
+  }
+
+  /**
+   * Returns metrics every download is recorded to.
+   */
+  public CrawlMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns running downloads of every host that has any.
+   */
+  public Map<String, Integer> getInFlightByHost() {
+    Map<String, Integer> result = new TreeMap<>();
+    hostQueues.forEach((host, queue) -> {
+      int active = queue.getActive();
+      if (active > 0) {
+        result.put(host, active);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns queued downloads of every host that has any.
+   */
+  public Map<String, Integer> getQueuedByHost() {
+    Map<String, Integer> result = new TreeMap<>();
+    hostQueues.forEach((host, queue) -> {
+      int queued = queue.getQueued();
+      if (queued > 0) {
+        result.put(host, queued);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Stops the rate timer and rejects queued downloads.
+   */
+  @Override
+  public void close() {
+    if (timer != null) {
+      timer.shutdownNow();
+    }
+    hostQueues.values().forEach(HostQueue::rejectQueued);
+  }
+
+  // a runtime exception of the downloader still fails the url, or the crawl would wait for it
+  private static IOException asIOException(Throwable e) {
+    return e instanceof IOException ? (IOException) e : new IOException(e);
+  }
+
+  private class HostQueue {
+
+    private final Queue<DownloadTask> ready = new ArrayDeque<>();
+    private final HostLimiter limiter = new HostLimiter(hostLimits, perHostMax, System.nanoTime());
+    private int active = 0;
+    private boolean wakeUpScheduled = false;
+
+    synchronized int getActive() {
+      return active;
+    }
 
-      logger.debug("Download '{}' url", url);
-      document = downloader.download(url);
-    } finally {
-      perHostDownloadSemaphors.get(host).release();
-      logger.debug("Download '{}' url", url);
+    synchronized int getQueued() {
+      return ready.size();
     }
 
-    return document;
+    void submit(DownloadTask task) {
+      synchronized (this) {
+        if (active >= limiter.getLimit()) {
+          logger.debug("Queue '{}' url, host is busy", task.url);
+        }
+        ready.add(task);
+      }
+      pump();
+    }
+
+    void release(long latencyNanos, boolean failed) {
+      synchronized (this) {
+        active--;
+        limiter.completed(latencyNanos, failed);
+      }
+      pump();
+    }
+
+    // starts queued downloads while the host has free slots and rate tokens
+    private void pump() {
+      while (true) {
+        DownloadTask next;
+        synchronized (this) {
+          if (ready.isEmpty() || active >= limiter.getLimit()) {
+            return;
+          }
+          long wait = limiter.acquire(System.nanoTime());
+          if (wait > 0) {
+            if (scheduleWakeUp(wait)) {
+              return;
+            }
+            next = null;
+          } else {
+            next = ready.poll();
+            active++;
+          }
+        }
+
+        if (next == null) {
+          // closed, nothing would ever start the queued downloads
+          rejectQueued();
+          return;
+        }
+
+        if (!dispatch(next)) {
+          synchronized (this) {
+            active--;
+          }
+        }
+      }
+    }
+
+    private boolean scheduleWakeUp(long delayNanos) {
+      if (wakeUpScheduled) {
+        return true;
+      }
+      try {
+        timer.schedule(() -> {
+          synchronized (this) {
+            wakeUpScheduled = false;
+          }
+          pump();
+        }, delayNanos, TimeUnit.NANOSECONDS);
+        wakeUpScheduled = true;
+        return true;
+      } catch (RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    void rejectQueued() {
+      while (true) {
+        DownloadTask next;
+        synchronized (this) {
+          next = ready.poll();
+        }
+        if (next == null) {
+          return;
+        }
+        next.onRejected.run();
+      }
+    }
+
+    private boolean dispatch(DownloadTask task) {
+      try {
+        downloaders.execute(() -> task.run(this));
+        return true;
+      } catch (RejectedExecutionException e) {
+        task.onRejected.run();
+        return false;
+      }
+    }
+  }
+
+  private class DownloadTask {
+
+    private final CanonicalUrl url;
+    private final Consumer<Document> onDownloaded;
+    private final Consumer<IOException> onError;
+    private final Runnable onRejected;
+
+    DownloadTask(CanonicalUrl url, Consumer<Document> onDownloaded, Consumer<IOException> onError,
+        Runnable onRejected) {
+      this.url = url;
+      this.onDownloaded = onDownloaded;
+      this.onError = onError;
+      this.onRejected = onRejected;
+    }
+
+    void run(HostQueue hostQueue) {
+      if (downloader instanceof AsyncDownloader) {
+        runAsync(hostQueue);
+        return;
+      }
+
+      long start = System.nanoTime();
+      long latency;
+      Document document = null;
+      Exception failure = null;
+      try {
+        logger.debug("Download '{}' url", url);
+        document = downloader instanceof CanonicalUrlDownloader
+            ? ((CanonicalUrlDownloader) downloader).download(url)
+            : downloader.download(url.getUrl());
+      } catch (IOException | RuntimeException e) {
+        failure = e;
+      } finally {
+        latency = System.nanoTime() - start;
+        hostQueue.release(latency, failure != null);
+      }
+
+      if (failure != null) {
+        metrics.downloadFailed(latency, failure);
+        onError.accept(asIOException(failure));
+        return;
+      }
+      metrics.downloaded(latency, document);
+      onDownloaded.accept(document);
+    }
+
+    private void runAsync(HostQueue hostQueue) {
+      logger.debug("Start download of '{}' url", url);
+      long start = System.nanoTime();
+      CompletableFuture<Document> download;
+      try {
+        download = ((AsyncDownloader) downloader).downloadAsync(url);
+      } catch (RuntimeException e) {
+        // completes like any failed download, which releases the slot
+        download = new CompletableFuture<>();
+        download.completeExceptionally(e);
+      }
+
+      download.whenComplete((document, error) -> {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        long latency = System.nanoTime() - start;
+        if (error == null) {
+          metrics.downloaded(latency, document);
+        } else {
+          metrics.downloadFailed(latency, cause);
+        }
+        hostQueue.release(latency, error != null);
+        try {
+          downloaders.execute(() -> {
+            if (error == null) {
+              onDownloaded.accept(document);
+            } else {
+              onError.accept(asIOException(cause));
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          onRejected.run();
+        }
+      });
+    }
   }
 }
@@ -0,0 +1,167 @@
+package ru.ilnurkhafizoff;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link VisitedUrls} storing 64-bit url fingerprints instead of url strings.
+ *
+ * <p>Fingerprints are kept in open-addressing tables with linear probing in direct memory, split
+ * into {@value #SEGMENTS} segments. A table grows when it is {@value #MAX_LOAD_PERCENT}% full, so
+ * a visited url costs 10 to 21 bytes off-heap and nothing on the heap.
+ *
+ * <p>A crawl offers every url many times but adds it once. So lookups, and adds of a fingerprint
+ * already present, probe the table without locking. Only inserting a new fingerprint locks its
+ * segment, and that lock also covers growing the table. Without it, a concurrent resize would
+ * need a migration protocol for inserts landing in the old table.
+ *
+ * <p>Two different urls with equal fingerprints make the second one look visited, so it is
+ * skipped. For {@code n} urls the probability of any such collision is about
+ * {@code n^2 / 2^65}: 3e-8 for a million urls, 3e-4 for a hundred million.
+ */
+public class FingerprintVisitedUrls implements VisitedUrls {
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int SEGMENTS = 1 << SEGMENT_BITS;
+  private static final int INITIAL_SEGMENT_CAPACITY = 1024;
+  private static final int MAX_LOAD_PERCENT = 75;
+
+  // 0 marks an empty slot, fingerprints are never 0
+  private static final long EMPTY = 0;
+
+  private static final VarHandle SLOT =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  public FingerprintVisitedUrls() {
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+    }
+  }
+
+  @Override
+  public boolean add(String url) {
+    return add(fingerprint(url));
+  }
+
+  @Override
+  public boolean add(CanonicalUrl url) {
+    return add(url.getFingerprint());
+  }
+
+  /**
+   * Returns whether url was added, or another url with the same fingerprint.
+   */
+  public boolean contains(String url) {
+    long fingerprint = fingerprint(url);
+    return segments[(int) (fingerprint >>> (Long.SIZE - SEGMENT_BITS))].contains(fingerprint);
+  }
+
+  private boolean add(long fingerprint) {
+    return segments[(int) (fingerprint >>> (Long.SIZE - SEGMENT_BITS))].add(fingerprint);
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  // FNV-1a over UTF-16 chars followed by the murmur3 finalizer for well mixed high and low bits
+  static long fingerprint(String url) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < url.length(); i++) {
+      h ^= url.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h == EMPTY ? 1 : h;
+  }
+
+  private static class Segment {
+
+    // replaced, never modified, once grown; slots are written under the lock only
+    private volatile ByteBuffer slots;
+    private int size = 0;
+
+    Segment(int capacity) {
+      slots = allocate(capacity);
+    }
+
+    boolean add(long fingerprint) {
+      if (contains(fingerprint)) {
+        return false;
+      }
+
+      synchronized (this) {
+        if (!insert(slots, fingerprint)) {
+          return false;
+        }
+        size++;
+        if (size * 100L > capacity(slots) * (long) MAX_LOAD_PERCENT) {
+          grow();
+        }
+        return true;
+      }
+    }
+
+    // A stale table may miss a fingerprint, add then rechecks under the lock
+    boolean contains(long fingerprint) {
+      ByteBuffer table = slots;
+      int mask = capacity(table) - 1;
+      for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+        long slot = (long) SLOT.getAcquire(table, i * Long.BYTES);
+        if (slot == fingerprint) {
+          return true;
+        }
+        if (slot == EMPTY) {
+          return false;
+        }
+      }
+    }
+
+    private void grow() {
+      ByteBuffer grown = allocate(capacity(slots) * 2);
+      for (int i = 0; i < capacity(slots); i++) {
+        long fingerprint = slots.getLong(i * Long.BYTES);
+        if (fingerprint != EMPTY) {
+          insert(grown, fingerprint);
+        }
+      }
+      slots = grown;
+    }
+
+    private static boolean insert(ByteBuffer table, long fingerprint) {
+      int mask = capacity(table) - 1;
+      for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+        long slot = table.getLong(i * Long.BYTES);
+        if (slot == fingerprint) {
+          return false;
+        }
+        if (slot == EMPTY) {
+          SLOT.setRelease(table, i * Long.BYTES, fingerprint);
+          return true;
+        }
+      }
+    }
+
+    private static int capacity(ByteBuffer table) {
+      return table.capacity() / Long.BYTES;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+      return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder());
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package ru.ilnurkhafizoff;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request rate and concurrency limit of a single host. Not thread-safe, every host queue guards
+ * its limiter with its own lock.
+ *
+ * <p>The rate is a token bucket holding up to {@code burst} tokens, refilled at {@code
+ * requestsPerSecond}. Every download start takes a token.
+ *
+ * <p>Adaptive concurrency is additive-increase/multiplicative-decrease. The limit starts at
+ * {@value #INITIAL_LIMIT} and doubles every window of {@code limit} downloads until the host first
+ * looks congested, then grows by one per window. A host looks congested when the recent latency
+ * exceeds {@value #LATENCY_TOLERANCE} times its long-term latency, or when more than {@value
+ * #MAX_ERROR_RATE} of recent downloads failed. The limit of a congested host is halved at most
+ * once per window, so a single slow burst does not collapse it.
+ */
+public class HostLimiter {
+
+  private static final int INITIAL_LIMIT = 2;
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double MAX_ERROR_RATE = 0.25;
+
+  // weights of the latest sample in the moving averages
+  private static final double RECENT_WEIGHT = 0.2;
+  private static final double LONG_TERM_WEIGHT = 0.02;
+
+  private final HostLimits limits;
+  private final int maxLimit;
+
+  private double tokens;
+  private long refilledAt;
+
+  private double limit;
+  private boolean slowStart = true;
+  private int sinceDecrease;
+  private double recentLatency;
+  private double longTermLatency;
+  private double errorRate;
+
+  public HostLimiter(HostLimits limits, int maxLimit, long nanoTime) {
+    this.limits = limits;
+    this.maxLimit = maxLimit;
+    this.tokens = limits.getBurst();
+    this.refilledAt = nanoTime;
+    this.limit = limits.isAdaptive() ? Math.min(INITIAL_LIMIT, maxLimit) : maxLimit;
+  }
+
+  /**
+   * Returns number of downloads allowed to run at once.
+   */
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * Takes a token for a download start.
+   *
+   * @return zero if the token was taken, otherwise nanoseconds until the next token.
+   */
+  public long acquire(long nanoTime) {
+    if (!limits.isRateLimited()) {
+      return 0;
+    }
+
+    double perNano = limits.getRequestsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+    tokens = Math.min(limits.getBurst(), tokens + (nanoTime - refilledAt) * perNano);
+    refilledAt = nanoTime;
+    if (tokens >= 1) {
+      tokens--;
+      return 0;
+    }
+    return Math.max(1, (long) Math.ceil((1 - tokens) / perNano));
+  }
+
+  /**
+   * Updates concurrency limit with a finished download.
+   */
+  public void completed(long latencyNanos, boolean failed) {
+    if (!limits.isAdaptive()) {
+      return;
+    }
+
+    if (longTermLatency == 0) {
+      recentLatency = longTermLatency = latencyNanos;
+    } else {
+      recentLatency += RECENT_WEIGHT * (latencyNanos - recentLatency);
+      longTermLatency += LONG_TERM_WEIGHT * (latencyNanos - longTermLatency);
+    }
+    errorRate += RECENT_WEIGHT * ((failed ? 1 : 0) - errorRate);
+    sinceDecrease++;
+
+    boolean congested =
+        recentLatency > LATENCY_TOLERANCE * longTermLatency || errorRate > MAX_ERROR_RATE;
+    if (congested) {
+      if (sinceDecrease >= limit) {
+        limit = Math.max(1, limit * DECREASE_FACTOR);
+        slowStart = false;
+        sinceDecrease = 0;
+      }
+    } else {
+      limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package ru.ilnurkhafizoff;
+
+/**
+ * Limits applied by {@link DownloadHandler} to every host on top of its {@code perHost} ceiling.
+ *
+ * <p>A finite request rate starts downloads of a host no faster than {@code requestsPerSecond},
+ * allowing bursts of {@code burst} requests after idle periods. Adaptive concurrency lets every
+ * host find its own limit between one and {@code perHost}, see {@link HostLimiter}.
+ */
+public final class HostLimits {
+
+  private static final HostLimits FIXED = new HostLimits(Double.POSITIVE_INFINITY, 1, false);
+
+  private final double requestsPerSecond;
+  private final int burst;
+  private final boolean adaptive;
+
+  /**
+   * @param requestsPerSecond download starts per second of every host, {@link
+   * Double#POSITIVE_INFINITY} for no rate limit.
+   * @param burst download starts allowed at once after an idle period.
+   * @param adaptive whether concurrency of every host adapts to its latency and errors.
+   */
+  public HostLimits(double requestsPerSecond, int burst, boolean adaptive) {
+    if (!(requestsPerSecond > 0)) {
+      throw new IllegalArgumentException("Requests per second should be positive");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("Burst should be positive");
+    }
+    this.requestsPerSecond = requestsPerSecond;
+    this.burst = burst;
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * Returns limits that keep exactly {@code perHost} downloads of a host running at a time.
+   */
+  public static HostLimits fixed() {
+    return FIXED;
+  }
+
+  /**
+   * Returns adaptive concurrency with at most requestsPerSecond download starts per host, and
+   * bursts of up to one second of requests.
+   */
+  public static HostLimits adaptive(double requestsPerSecond) {
+    return new HostLimits(requestsPerSecond,
+        (int) Math.max(1, Math.min(requestsPerSecond, Integer.MAX_VALUE)), true);
+  }
+
+  public double getRequestsPerSecond() {
+    return requestsPerSecond;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  boolean isRateLimited() {
+    return requestsPerSecond != Double.POSITIVE_INFINITY;
+  }
+}
@@ -0,0 +1,26 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Extracts links from a downloaded HTML page.
+ */
+@FunctionalInterface
+public interface LinkExtractor {
+
+  /**
+   * Builds a jsoup DOM of the page.
+   */
+  LinkExtractor JSOUP = URLUtils::extractLinks;
+
+  /**
+   * Scans the page with {@link LinkTokenizer}, several times faster and with little garbage.
+   */
+  LinkExtractor STREAMING = LinkTokenizer::extractLinks;
+
+  List<String> extractLinks(URI url, InputStream is) throws IOException;
+}
@@ -0,0 +1,279 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jsoup.parser.Parser;
+
+/**
+ * Single-pass HTML scanner extracting the same links as {@link URLUtils#extractLinks} without
+ * building a DOM.
+ *
+ * <p>Only tags are tokenized: comments, declarations and the raw text of {@code script}, {@code
+ * style}, {@code textarea} and {@code title} are skipped, the {@code href} of every {@code a} tag
+ * is collected. Relative links are resolved against the first {@code <base href>}, if any, while
+ * {@link URLUtils#extractLinks} always resolves against the page url. Hrefs are decoded as UTF-8,
+ * and their character references as jsoup decodes them in attributes.
+ */
+public class LinkTokenizer {
+
+  private static final int BUFFER_BYTES = 8192;
+  private static final String[] RAW_TEXT_TAGS = {"script", "style", "textarea", "title"};
+
+  private final InputStream is;
+  private final byte[] buffer = new byte[BUFFER_BYTES];
+  private int position = 0;
+  private int limit = 0;
+
+  private final StringBuilder name = new StringBuilder();
+  private final ByteArrayOutputStream value = new ByteArrayOutputStream();
+
+  private LinkTokenizer(InputStream is) {
+    this.is = is;
+  }
+
+  /**
+   * Extracts links from the HTML document.
+   *
+   * @param url url of the document.
+   * @param is document stream.
+   * @return absolute http and https links in document order.
+   * @throws IOException if document could not be read.
+   */
+  public static List<String> extractLinks(URI url, InputStream is) throws IOException {
+    List<String> hrefs = new ArrayList<>();
+    String base = new LinkTokenizer(is).scan(hrefs);
+
+    URI baseUri = url;
+    if (base != null) {
+      try {
+        baseUri = url.resolve(base);
+      } catch (IllegalArgumentException e) {
+        // Invalid base, keep the page url
+      }
+    }
+
+    List<String> result = new ArrayList<>(hrefs.size());
+    for (String href : hrefs) {
+      try {
+        URI link = baseUri.resolve(href);
+        if (("http".equalsIgnoreCase(link.getScheme()) || "https".equals(link.getScheme()))
+            && link.getHost() != null) {
+          result.add(URLUtils.removeFragment(link.normalize().toString()));
+        }
+      } catch (IllegalArgumentException e) {
+        // Invalid URI, ignore
+      }
+    }
+    return result;
+  }
+
+  // Collects hrefs of a tags and returns href of the first base tag
+  private String scan(List<String> hrefs) throws IOException {
+    String base = null;
+
+    int c;
+    while ((c = next()) >= 0) {
+      if (c != '<') {
+        continue;
+      }
+
+      c = next();
+      if (c == '!') {
+        skipMarkupDeclaration();
+      } else if (c == '/' || c == '?') {
+        skipPast('>');
+      } else if (isLetter(c)) {
+        String tag = readName(c);
+        String href = readAttributes();
+
+        if (href != null) {
+          if (tag.equals("a")) {
+            hrefs.add(href);
+          } else if (tag.equals("base") && base == null) {
+            base = href;
+          }
+        }
+
+        for (String rawTextTag : RAW_TEXT_TAGS) {
+          if (tag.equals(rawTextTag)) {
+            skipRawText(rawTextTag);
+          }
+        }
+      } else if (c >= 0) {
+        // a stray '<' is text, the byte after it may start a tag
+        position--;
+      }
+    }
+
+    return base;
+  }
+
+  private String readName(int first) throws IOException {
+    name.setLength(0);
+    int c = first;
+    while (c >= 0 && !isSpace(c) && c != '/' && c != '>' && c != '=') {
+      name.append(Character.toLowerCase((char) c));
+      c = next();
+    }
+    if (c >= 0) {
+      position--;
+    }
+    return name.toString();
+  }
+
+  // Reads attributes up to the end of the tag and returns the last href value, as jsoup does
+  private String readAttributes() throws IOException {
+    String href = null;
+
+    while (true) {
+      int c = next();
+      while (isSpace(c) || c == '/') {
+        c = next();
+      }
+      if (c < 0 || c == '>') {
+        return href;
+      }
+
+      String attribute = readName(c);
+      c = next();
+      while (isSpace(c)) {
+        c = next();
+      }
+
+      if (c != '=') {
+        if (c >= 0) {
+          position--;
+        }
+        if (attribute.equals("href")) {
+          href = "";
+        }
+        continue;
+      }
+
+      String attributeValue = readValue();
+      if (attribute.equals("href")) {
+        href = attributeValue;
+      }
+    }
+  }
+
+  private String readValue() throws IOException {
+    int c = next();
+    while (isSpace(c)) {
+      c = next();
+    }
+
+    value.reset();
+    if (c == '"' || c == '\'') {
+      int quote = c;
+      while ((c = next()) >= 0 && c != quote) {
+        value.write(c);
+      }
+    } else {
+      while (c >= 0 && !isSpace(c) && c != '>') {
+        value.write(c);
+        c = next();
+      }
+      if (c >= 0) {
+        position--;
+      }
+    }
+    return decodeEntities(new String(value.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private void skipMarkupDeclaration() throws IOException {
+    int c = next();
+    if (c == '-') {
+      c = next();
+      if (c == '-') {
+        // comment, ends with -->
+        int dashes = 0;
+        while ((c = next()) >= 0) {
+          if (c == '>' && dashes >= 2) {
+            return;
+          }
+          dashes = c == '-' ? dashes + 1 : 0;
+        }
+        return;
+      }
+    }
+    if (c >= 0 && c != '>') {
+      skipPast('>');
+    }
+  }
+
+  private void skipRawText(String tag) throws IOException {
+    int c;
+    while ((c = next()) >= 0) {
+      if (c != '<') {
+        continue;
+      }
+      if ((c = next()) != '/') {
+        if (c >= 0) {
+          position--;
+        }
+        continue;
+      }
+
+      int matched = 0;
+      while (matched < tag.length()
+          && (c = next()) >= 0 && Character.toLowerCase((char) c) == tag.charAt(matched)) {
+        matched++;
+      }
+      if (matched == tag.length()) {
+        c = next();
+        if (c < 0 || isSpace(c) || c == '/' || c == '>') {
+          if (c != '>') {
+            skipPast('>');
+          }
+          return;
+        }
+      }
+      if (c >= 0) {
+        position--;
+      }
+    }
+  }
+
+  private void skipPast(int end) throws IOException {
+    int c;
+    while ((c = next()) >= 0 && c != end) {
+      // skip
+    }
+  }
+
+  // Returns the next byte or -1 at the end of stream, one byte can always be pushed back
+  private int next() throws IOException {
+    if (position == limit) {
+      if (limit > 0) {
+        buffer[0] = buffer[limit - 1];
+        position = limit = 1;
+      }
+      int read = is.read(buffer, limit, buffer.length - limit);
+      if (read <= 0) {
+        return -1;
+      }
+      limit += read;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  private static boolean isSpace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+
+  private static boolean isLetter(int c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+  }
+
+  // decodes character references with the entity table and attribute rules of jsoup
+  private static String decodeEntities(String value) {
+    return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, true);
+  }
+}
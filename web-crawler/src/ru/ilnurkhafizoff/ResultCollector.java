@@ -0,0 +1,33 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link CrawlListener} collecting the events into a {@link Result}.
+ */
+public class ResultCollector implements CrawlListener {
+
+  private final Queue<String> downloadedUrls = new ConcurrentLinkedQueue<>();
+  private final ConcurrentMap<String, IOException> errors = new ConcurrentHashMap<>();
+
+  @Override
+  public void onDownloaded(String url, int depth) {
+    downloadedUrls.add(url);
+  }
+
+  @Override
+  public void onError(String url, IOException e) {
+    errors.put(url, e);
+  }
+
+  public Result toResult() {
+    return new Result(new ArrayList<>(downloadedUrls), new HashMap<>(errors));
+  }
+}
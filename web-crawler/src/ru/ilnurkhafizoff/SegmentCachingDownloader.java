@@ -0,0 +1,78 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads documents from the Web like {@link info.kgeorgiy.java.advanced.crawler.CachingDownloader},
+ * but keeps them in a {@link SegmentStore} instead of a file per page.
+ */
+public class SegmentCachingDownloader implements CanonicalUrlDownloader, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SegmentCachingDownloader.class);
+
+  private final SegmentStore store;
+  private final LinkExtractor linkExtractor;
+
+  public SegmentCachingDownloader(Path directory) throws IOException {
+    this(new SegmentStore(directory), LinkExtractor.JSOUP);
+  }
+
+  public SegmentCachingDownloader(SegmentStore store, LinkExtractor linkExtractor) {
+    this.store = store;
+    this.linkExtractor = linkExtractor;
+  }
+
+  /**
+   * Downloads url, pages are stored by the {@link CanonicalUrl#getNormalized() normalized} url.
+   */
+  @Override
+  public Document download(CanonicalUrl url) throws IOException {
+    URI uri = url.getUri();
+    String key = url.getNormalized();
+
+    long fetched = 0;
+    if (!store.contains(key)) {
+      log.debug("Downloading {}", url);
+      byte[] page = fetch(uri);
+      store.put(key, page);
+      fetched = page.length;
+    } else {
+      log.debug("Already downloaded {}", url);
+    }
+
+    return SizedDocument.of(fetched, () -> {
+      byte[] page = store.get(key);
+      if (page == null) {
+        // evicted since download
+        page = fetch(uri);
+      }
+      return linkExtractor.extractLinks(uri, new ByteArrayInputStream(page));
+    });
+  }
+
+  @Override
+  public void close() throws IOException {
+    store.close();
+  }
+
+  private static byte[] fetch(URI uri) throws IOException {
+    try (InputStream is = uri.toURL().openStream()) {
+      ByteArrayOutputStream page = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) >= 0) {
+        page.write(buffer, 0, read);
+      }
+      return page.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,392 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log-structured key-value store of downloaded pages.
+ *
+ * <p>Values are appended to segment files of about {@code segmentBytes} each. An in-memory index
+ * maps the 64-bit hash of a key to the location of its latest record. Records carry the key and a
+ * CRC, so hash collisions read as misses, and a torn tail left by a crash is cut off when the
+ * store is opened again.
+ *
+ * <p>Every time a new segment is started, older segments less than half live are compacted. Then
+ * the oldest segments are evicted until the store fits into {@code maxBytes}.
+ */
+public class SegmentStore implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SegmentStore.class);
+
+  public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+  public static final long DEFAULT_MAX_BYTES = Long.MAX_VALUE;
+
+  // key hash, key length, value length, crc of key and value
+  private static final int HEADER_BYTES = Long.BYTES + 3 * Integer.BYTES;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final double MIN_LIVE_RATIO = 0.5;
+
+  private final Path directory;
+  private final long segmentBytes;
+  private final long maxBytes;
+
+  private final ConcurrentMap<Long, Location> index = new ConcurrentHashMap<>();
+  private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+  // read lock for record reads and appends, write lock for removing segments
+  private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+  private final Object appendLock = new Object();
+  private Segment active;
+
+  public SegmentStore(Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_BYTES);
+  }
+
+  public SegmentStore(Path directory, long segmentBytes, long maxBytes) throws IOException {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxBytes = maxBytes;
+
+    Files.createDirectories(directory);
+    for (Path file : segmentFiles(directory)) {
+      Segment segment = new Segment(segmentId(file), file);
+      segments.put(segment.id, segment);
+      recover(segment);
+    }
+
+    active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    log.debug("Opened {} with {} segments and {} keys", directory, segments.size(), index.size());
+  }
+
+  /**
+   * Returns whether a value is stored for key. Only the header and the key of its record are read.
+   */
+  public boolean contains(String key) throws IOException {
+    byte[] keyBytes = key.getBytes(UTF_8);
+
+    segmentsLock.readLock().lock();
+    try {
+      Location location = index.get(FingerprintVisitedUrls.fingerprint(key));
+      int keyEnd = HEADER_BYTES + keyBytes.length;
+      return location != null && location.length >= keyEnd
+          && hasKey(location.segment.read(location.offset, keyEnd), keyBytes);
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the latest value stored for key or {@code null} if there is none.
+   */
+  public byte[] get(String key) throws IOException {
+    byte[] keyBytes = key.getBytes(UTF_8);
+
+    segmentsLock.readLock().lock();
+    try {
+      Location location = index.get(FingerprintVisitedUrls.fingerprint(key));
+      if (location == null) {
+        return null;
+      }
+
+      ByteBuffer record = location.segment.read(location.offset, location.length);
+      if (!hasKey(record, keyBytes)) {
+        return null;
+      }
+
+      byte[] value = new byte[record.remaining()];
+      record.get(value);
+      return value;
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+  }
+
+  public void put(String key, byte[] value) throws IOException {
+    long hash = FingerprintVisitedUrls.fingerprint(key);
+    ByteBuffer record = encode(hash, key.getBytes(UTF_8), value);
+
+    boolean rolled;
+    segmentsLock.readLock().lock();
+    try {
+      synchronized (appendLock) {
+        rolled = append(hash, record);
+      }
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+
+    if (rolled) {
+      maintain();
+    }
+  }
+
+  /**
+   * Rewrites live records of sparse segments into the active one and deletes those segments.
+   */
+  public void compact() throws IOException {
+    segmentsLock.writeLock().lock();
+    try {
+      compactSparseSegments();
+    } finally {
+      segmentsLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns total size of segment files.
+   */
+  public long size() {
+    return segments.values().stream().mapToLong(s -> s.size.get()).sum();
+  }
+
+  public int keys() {
+    return index.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    segmentsLock.writeLock().lock();
+    try {
+      active.channel.force(false);
+      for (Segment segment : segments.values()) {
+        segment.channel.close();
+      }
+    } finally {
+      segmentsLock.writeLock().unlock();
+    }
+  }
+
+  // Called with appendLock held, returns whether a new segment was started
+  private boolean append(long hash, ByteBuffer record) throws IOException {
+    boolean rolled = false;
+    if (active.size.get() > 0 && active.size.get() + record.remaining() > segmentBytes) {
+      active.channel.force(false);
+      active = createSegment(active.id + 1);
+      rolled = true;
+    }
+
+    int length = record.remaining();
+    long offset = active.append(record);
+    index(hash, new Location(active, offset, length));
+    return rolled;
+  }
+
+  private void index(long hash, Location location) {
+    location.segment.liveBytes.addAndGet(location.length);
+    Location previous = index.put(hash, location);
+    if (previous != null) {
+      previous.segment.liveBytes.addAndGet(-previous.length);
+    }
+  }
+
+  private void maintain() throws IOException {
+    segmentsLock.writeLock().lock();
+    try {
+      compactSparseSegments();
+
+      while (size() > maxBytes && segments.size() > 1) {
+        Segment oldest = segments.firstEntry().getValue();
+        index.values().removeIf(location -> location.segment == oldest);
+        log.debug("Evict {}", oldest.path);
+        delete(oldest);
+      }
+    } finally {
+      segmentsLock.writeLock().unlock();
+    }
+  }
+
+  // Called with the write lock held
+  private void compactSparseSegments() throws IOException {
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      if (segment == active || segment.liveBytes.get() >= segment.size.get() * MIN_LIVE_RATIO) {
+        continue;
+      }
+
+      log.debug("Compact {}: {} of {} bytes live", segment.path, segment.liveBytes,
+          segment.size);
+      List<Map.Entry<Long, Location>> live = new ArrayList<>();
+      for (Map.Entry<Long, Location> entry : index.entrySet()) {
+        if (entry.getValue().segment == segment) {
+          live.add(entry);
+        }
+      }
+
+      synchronized (appendLock) {
+        for (Map.Entry<Long, Location> entry : live) {
+          Location location = entry.getValue();
+          append(entry.getKey(), segment.read(location.offset, location.length));
+        }
+      }
+      delete(segment);
+    }
+  }
+
+  private void recover(Segment segment) throws IOException {
+    long size = segment.channel.size();
+    long offset = 0;
+    while (offset + HEADER_BYTES <= size) {
+      ByteBuffer header = segment.read(offset, HEADER_BYTES);
+      long hash = header.getLong();
+      int keyLength = header.getInt();
+      int valueLength = header.getInt();
+      int crc = header.getInt();
+
+      long length = (long) HEADER_BYTES + keyLength + valueLength;
+      if (keyLength < 0 || valueLength < 0 || offset + length > size) {
+        break;
+      }
+
+      ByteBuffer record = segment.read(offset, (int) length);
+      record.position(HEADER_BYTES);
+      if (crc(record) != crc) {
+        break;
+      }
+
+      index(hash, new Location(segment, offset, (int) length));
+      offset += length;
+    }
+
+    if (offset < size) {
+      log.warn("Truncate {} from {} to {} bytes", segment.path, size, offset);
+      segment.channel.truncate(offset);
+    }
+    segment.size.set(offset);
+  }
+
+  private Segment createSegment(int id) throws IOException {
+    Segment segment = new Segment(id, directory.resolve(String.format("%s%06d%s",
+        SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private void delete(Segment segment) throws IOException {
+    segments.remove(segment.id);
+    segment.channel.close();
+    Files.deleteIfExists(segment.path);
+  }
+
+  // Compares the key of a record read from its start, leaves the record positioned after the key
+  private static boolean hasKey(ByteBuffer record, byte[] key) {
+    if (record.getInt(Long.BYTES) != key.length) {
+      return false;
+    }
+    byte[] storedKey = new byte[key.length];
+    record.position(HEADER_BYTES);
+    record.get(storedKey);
+    return Arrays.equals(storedKey, key);
+  }
+
+  private static ByteBuffer encode(long hash, byte[] key, byte[] value) {
+    ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + key.length + value.length);
+    record.putLong(hash)
+        .putInt(key.length)
+        .putInt(value.length)
+        .putInt(0)
+        .put(key)
+        .put(value);
+
+    record.position(HEADER_BYTES);
+    record.putInt(HEADER_BYTES - Integer.BYTES, crc(record));
+    record.position(0);
+    return record;
+  }
+
+  // crc of the bytes from position to limit
+  private static int crc(ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    return (int) crc.getValue();
+  }
+
+  private static List<Path> segmentFiles(Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(files::add);
+    }
+    files.sort(Comparator.comparingInt(SegmentStore::segmentId));
+    return files;
+  }
+
+  private static int segmentId(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(
+        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static class Segment {
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    Segment(int id, Path path) throws IOException {
+      this.id = id;
+      this.path = path;
+      this.channel = FileChannel.open(path,
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    long append(ByteBuffer record) throws IOException {
+      long offset = size.get();
+      long position = offset;
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+      size.set(position);
+      return offset;
+    }
+
+    ByteBuffer read(long offset, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new EOFException(path + " ends before " + (offset + length));
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+  private static class Location {
+
+    private final Segment segment;
+    private final long offset;
+    private final int length;
+
+    Location(Segment segment, long offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
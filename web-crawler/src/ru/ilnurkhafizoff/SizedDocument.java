@@ -0,0 +1,30 @@
+package ru.ilnurkhafizoff;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Document that knows how many bytes were received for it, counted by {@link CrawlMetrics}.
+ */
+public interface SizedDocument extends Document {
+
+  /**
+   * Returns size of the page as received, zero if it was not received over the network.
+   */
+  long getBytes();
+
+  static SizedDocument of(long bytes, Document document) {
+    return new SizedDocument() {
+      @Override
+      public long getBytes() {
+        return bytes;
+      }
+
+      @Override
+      public List<String> extractLinks() throws IOException {
+        return document.extractLinks();
+      }
+    };
+  }
+}
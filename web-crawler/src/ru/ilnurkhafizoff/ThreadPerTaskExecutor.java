@@ -0,0 +1,213 @@
+package ru.ilnurkhafizoff;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor running every task on a new thread, with at most {@code maxRunning} tasks running at
+ * once. Tasks over the limit wait in a queue, never in a thread.
+ *
+ * <p>Threads come from {@link #newThreadFactory}: virtual threads when the runtime has them, small
+ * stack daemon threads otherwise. So concurrency is bounded by the limit only, not by the size of
+ * a pool.
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+  private static final Logger log = LoggerFactory.getLogger(ThreadPerTaskExecutor.class);
+
+  // platform threads only block on I/O, the default stack is far larger than they need
+  private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+  private final ThreadFactory threadFactory;
+  private final int maxRunning;
+
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger running = new AtomicInteger();
+  private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+  private final Object terminationLock = new Object();
+  private volatile boolean shutdown;
+
+  public ThreadPerTaskExecutor(ThreadFactory threadFactory, int maxRunning) {
+    if (maxRunning < 1) {
+      throw new IllegalArgumentException("Max running tasks should be positive");
+    }
+    this.threadFactory = threadFactory;
+    this.maxRunning = maxRunning;
+  }
+
+  /**
+   * Returns factory of virtual threads if the runtime supports them, or else of daemon threads
+   * with small stacks.
+   *
+   * @param prefix thread name prefix, followed by a counter.
+   */
+  public static ThreadFactory newThreadFactory(String prefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, prefix, 1L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("No virtual threads, use platform threads for {}", prefix);
+    }
+
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread thread =
+          new Thread(null, r, prefix + counter.incrementAndGet(), PLATFORM_STACK_BYTES);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Returns whether threads of factory are virtual.
+   */
+  public static boolean isVirtual(ThreadFactory factory) {
+    Thread thread = factory.newThread(() -> {
+    });
+    try {
+      Method isVirtual = Thread.class.getMethod("isVirtual");
+      return (Boolean) isVirtual.invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    if (shutdown) {
+      throw new RejectedExecutionException("Executor is shut down");
+    }
+    queue.add(task);
+    startQueued();
+  }
+
+  public int getRunning() {
+    return running.get();
+  }
+
+  public int getQueued() {
+    return queue.size();
+  }
+
+  // starts queued tasks while fewer than max are running
+  private void startQueued() {
+    while (!queue.isEmpty()) {
+      int current = running.get();
+      if (current >= maxRunning) {
+        return;
+      }
+      if (!running.compareAndSet(current, current + 1)) {
+        continue;
+      }
+
+      Runnable task = queue.poll();
+      if (task == null) {
+        running.decrementAndGet();
+        continue;
+      }
+      if (!start(task)) {
+        return;
+      }
+    }
+  }
+
+  // A task whose thread cannot be started goes back to the queue, to be retried when another
+  // task is submitted or finishes
+  private boolean start(Runnable task) {
+    Thread thread = null;
+    try {
+      thread = threadFactory.newThread(() -> {
+        try {
+          task.run();
+        } finally {
+          threads.remove(Thread.currentThread());
+          running.decrementAndGet();
+          startQueued();
+          signalIfTerminated();
+        }
+      });
+      threads.add(thread);
+      thread.start();
+      return true;
+    } catch (RuntimeException | OutOfMemoryError e) {
+      log.warn("Could not start a thread, task is queued again", e);
+      if (thread != null) {
+        threads.remove(thread);
+      }
+      queue.add(task);
+      running.decrementAndGet();
+      return false;
+    }
+  }
+
+  private void signalIfTerminated() {
+    if (isTerminated()) {
+      synchronized (terminationLock) {
+        terminationLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Rejects new tasks, queued and running ones are still run.
+   */
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    signalIfTerminated();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown = true;
+    List<Runnable> dropped = new ArrayList<>();
+    Runnable task;
+    while ((task = queue.poll()) != null) {
+      dropped.add(task);
+    }
+    threads.forEach(Thread::interrupt);
+    signalIfTerminated();
+    return dropped;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return shutdown && running.get() == 0 && queue.isEmpty();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (terminationLock) {
+      while (!isTerminated()) {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(terminationLock, left);
+      }
+      return true;
+    }
+  }
+}
@@ -1,191 +1,341 @@
 package ru.ilnurkhafizoff;
 
-import static java.util.stream.Collectors.toList;
-
 import info.kgeorgiy.java.advanced.crawler.Document;
 import info.kgeorgiy.java.advanced.crawler.Result;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Crawls from a single root url. Every node is a unit of pending work that is finished exactly
+ * once: when it turns out to be visited already, when its download or extraction fails, or after
+ * its child nodes have been counted as pending. The crawl is complete once no work is pending.
+ *
+ * <p>With a {@link CrawlJournal}, accepted nodes are appended to the journal instead of being
+ * started right away, and at most {@link CrawlJournal#getMaxInFlight()} of them are read back and
+ * started at a time. Nodes left unstarted by a shutdown stay pending in the journal for a resumed
+ * crawl.
+ */
 public class UrlProcessor {
 
   private static final Logger log = LoggerFactory.getLogger(UrlProcessor.class);
 
   private final ExecutorService extractors;
-  private final ExecutorService downloaders;
 
   private final DownloadHandler downloaderHandler;
 
-  private final Set<String> processedUrls = new HashSet<>();
-  private ReadWriteLock rwLock = new ReentrantReadWriteLock();
+  private final VisitedUrls processedUrls;
+
+  // null when the whole frontier is kept in memory
+  private final CrawlJournal journal;
+  private final AtomicInteger inFlightNodes = new AtomicInteger();
+  private final Object dispatchLock = new Object();
+  private volatile boolean stopped;
+
+  private final AtomicInteger pendingNodes = new AtomicInteger();
+  private final CountDownLatch completed = new CountDownLatch(1);
+
+  // set once by processUrl before the first node is processed
+  private CrawlListener listener;
+  private int maxDepth;
+
+  // events hold the read lock, processUrl takes the write lock to stop them before it returns
+  private final ReadWriteLock listenerLock = new ReentrantReadWriteLock();
+  private boolean returned;
 
   public UrlProcessor(
       ExecutorService extractors,
-      ExecutorService downloaders,
       DownloadHandler downloadHandler) {
 
+    this(extractors, downloadHandler, VisitedUrls.exact());
+  }
+
+  public UrlProcessor(
+      ExecutorService extractors,
+      DownloadHandler downloadHandler,
+      VisitedUrls processedUrls) {
+
+    this(extractors, downloadHandler, processedUrls, null);
+  }
+
+  public UrlProcessor(
+      ExecutorService extractors,
+      DownloadHandler downloadHandler,
+      VisitedUrls processedUrls,
+      CrawlJournal journal) {
+
     this.extractors = extractors;
-    this.downloaders = downloaders;
     this.downloaderHandler = downloadHandler;
+    this.processedUrls = processedUrls;
+    this.journal = journal;
   }
 
   public Result processUrl(String url, int maxDepth) {
+    ResultCollector collector = new ResultCollector();
+    processUrl(url, maxDepth, collector);
+    return collector.toResult();
+  }
+
+  /**
+   * Crawls from url reporting every processed page to listener. Returns once the crawl is complete
+   * or the calling thread is interrupted, with its interrupt status set. The listener is not called
+   * after this method returns, even if pages of an interrupted crawl are still being processed.
+   *
+   * @throws UncheckedIOException if the journal could not be read.
+   */
+  public void processUrl(String url, int maxDepth, CrawlListener listener) {
     if (maxDepth < 1) {
       throw new IllegalArgumentException("Max Depth should be greater than 1");
     }
 
-    Node rootNode = new Node(url, 1, maxDepth);
-    processNode(rootNode);
-    return gatherDownloadedUrls(rootNode);
+    this.listener = listener;
+    this.maxDepth = maxDepth;
+
+    try {
+      crawl(url, maxDepth);
+    } finally {
+      listenerLock.writeLock().lock();
+      try {
+        returned = true;
+      } finally {
+        listenerLock.writeLock().unlock();
+      }
+    }
   }
 
-  private void processNode(Node node) {
-    boolean processedAlready;
+  private void crawl(String url, int maxDepth) {
+    int resumed = 0;
+    if (journal != null) {
+      try {
+        resumed = journal.resume(url, maxDepth, processedUrls, listener);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
 
-    rwLock.readLock().lock();
-    processedAlready = processedUrls.contains(node.getUrl());
-    rwLock.readLock().unlock();
+    if (resumed > 0) {
+      pendingNodes.set(resumed);
+      dispatchFromJournal();
+    } else if (journal == null || !journal.isResumed()) {
+      pendingNodes.set(1);
+      processNode(new Node(CanonicalUrl.of(url), 1));
+    } else {
+      // resumed crawl that had finished already
+      completed.countDown();
+    }
 
-    if (!processedAlready) {
-      rwLock.writeLock().lock();
-      processedAlready = processedUrls.contains(node.getUrl());
-      if (!processedAlready) {
-        processedUrls.add(node.getUrl());
-      }
-      rwLock.writeLock().unlock();
+    try {
+      completed.await();
+    } catch (InterruptedException e) {
+      log.info("Interrupted during crawl from url {}. Return result with already processed urls.",
+          url);
+      Thread.currentThread().interrupt();
     }
+  }
 
-    if (!processedAlready) {
-      if (isLeafNode(node)) {
-        asyncDownload(node);
-      } else {
-        asyncDownloadAndExtract(node);
-      }
+  private void processNode(Node node) {
+    if (visit(node)) {
+      schedule(node);
     }
+  }
 
+  // claims node in the visited set, or finishes it if the url was visited already
+  private boolean visit(Node node) {
+    // atomic add-if-absent, exactly one extractor wins every url
+    boolean processedAlready = !processedUrls.add(node.getCanonicalUrl());
     if (processedAlready) {
-      node.processed(true);
+      finished(node);
     }
+    return !processedAlready;
   }
 
-  private boolean isLeafNode(Node node) {
-    return node.getNodeDepth() == node.getMaxDepth();
+  private void schedule(Node node) {
+    if (journal != null) {
+      appendToJournal(node);
+    } else {
+      start(node);
+    }
   }
 
-  private void asyncDownload(Node node) {
-    if (downloaders.isShutdown()) {
-      node.interrupted();
+  private void start(Node node) {
+    if (isLeafNode(node)) {
+      asyncDownload(node);
+    } else {
+      asyncDownloadAndExtract(node);
+    }
+  }
+
+  private void appendToJournal(Node node) {
+    try {
+      journal.append(node);
+    } catch (IOException e) {
+      journalFailed(e);
       return;
     }
+    dispatchFromJournal();
+  }
 
-    downloaders.submit(() -> {
+  // starts journaled nodes while fewer than max are in flight
+  private void dispatchFromJournal() {
+    List<Node> started = new ArrayList<>();
+    synchronized (dispatchLock) {
       try {
-        Document document = downloaderHandler.download(node.getUrl());
-        node.setDocument(document);
+        Node next;
+        while (!stopped && inFlightNodes.get() < journal.getMaxInFlight()
+            && (next = journal.next()) != null) {
+          inFlightNodes.incrementAndGet();
+          started.add(next);
+        }
+      } catch (IOException e) {
+        journalFailed(e);
+      }
+    }
+    started.forEach(this::start);
+  }
 
-        node.processed();
+  // called once per dispatched node, before the node is finished
+  private void releaseFromJournal(Node node, boolean processed, IOException error) {
+    if (processed) {
+      try {
+        journal.finished(node, error);
       } catch (IOException e) {
-        node.processed(e);
-      } catch (InterruptedException e) {
-        log.debug("Interrupted during download url {}", node.getUrl());
-        node.interrupted();
+        journalFailed(e);
       }
-    });
+    }
+    // a stopped crawl completes once nothing is in flight, its unstarted nodes are left pending
+    if (inFlightNodes.decrementAndGet() == 0 && stopped) {
+      completed.countDown();
+    } else {
+      dispatchFromJournal();
+    }
   }
 
-  private void asyncDownloadAndExtract(Node node) {
-    if (downloaders.isShutdown()) {
-      node.interrupted();
-      return;
+  private void journalFailed(IOException e) {
+    log.error("Crawl journal failed, stop crawl", e);
+    stopped = true;
+    if (inFlightNodes.get() == 0) {
+      completed.countDown();
     }
+  }
 
-    downloaders.submit(() -> {
-      try {
-        Document document = downloaderHandler.download(node.getUrl());
-        node.setDocument(document);
+  private boolean isLeafNode(Node node) {
+    return node.getNodeDepth() == maxDepth;
+  }
 
-        asyncExtractAndSendToProcessing(node);
-      } catch (IOException e) {
-        node.processed(e);
-      } catch (InterruptedException e) {
-        log.debug("Interrupted during download url {}", node.getUrl());
-        node.interrupted();
-      }
-    });
+  private void asyncDownload(Node node) {
+    downloaderHandler.download(node.getCanonicalUrl(),
+        document -> downloaded(node),
+        e -> failed(node, e),
+        () -> interrupted(node));
+  }
+
+  private void asyncDownloadAndExtract(Node node) {
+    downloaderHandler.download(node.getCanonicalUrl(),
+        document -> asyncExtractAndSendToProcessing(node, document),
+        e -> failed(node, e),
+        () -> interrupted(node));
   }
 
-  private void asyncExtractAndSendToProcessing(Node node) {
+  // document is only referenced by the extraction task and is dropped once it finishes
+  private void asyncExtractAndSendToProcessing(Node node, Document document) {
     if (extractors.isShutdown()) {
-      node.interrupted();
+      interrupted(node);
       return;
     }
 
     extractors.submit(() -> {
+      long start = System.nanoTime();
+      List<Node> linked;
       try {
-        List<Node> childNodes = node.getDocument().extractLinks().stream()
-            .map(cl -> new Node(cl, node.getNodeDepth() + 1, node.getMaxDepth()))
-            .collect(toList());
-
-        node.setChilds(childNodes);
+        List<String> links = document.extractLinks();
+        int childDepth = node.getNodeDepth() + 1;
+        linked = new ArrayList<>(links.size());
+        for (String link : links) {
+          linked.add(new Node(CanonicalUrl.of(link), childDepth));
+        }
+        downloaderHandler.getMetrics().extracted(System.nanoTime() - start);
+      } catch (IOException | RuntimeException e) {
+        // a broken page must still finish its node, or the crawl never completes
+        IOException error = e instanceof IOException ? (IOException) e : new IOException(e);
+        downloaderHandler.getMetrics().extractFailed(System.nanoTime() - start, error);
+        failed(node, error);
+        return;
+      }
 
-        childNodes.forEach(this::processNode);
+      // children become pending before the parent finishes, so the count never drops to zero early
+      pendingNodes.addAndGet(linked.size());
 
-        node.processed();
-      } catch (IOException e) {
-        node.processed(e);
+      // all children are claimed before any starts, so none is first reached deeper via a sibling
+      List<Node> children = new ArrayList<>(linked.size());
+      for (Node child : linked) {
+        if (visit(child)) {
+          children.add(child);
+        }
       }
+      children.forEach(this::schedule);
+
+      // scheduled before the parent is finished, so a journal records them before the parent
+      downloaded(node);
     });
   }
 
-  // Blocking BFS
-  private Result gatherDownloadedUrls(Node rootNode) {
-    log.debug("Start gathering...");
-    List<String> downloadedUrls = new ArrayList<>();
-    HashMap<String, IOException> errors = new HashMap<>();
-
-    Queue<Node> queue = new LinkedList<>();
-    queue.add(rootNode);
-    while (!queue.isEmpty()) {
-      Node node = queue.poll();
-      log.debug("The next node from queue: {}", node);
-
-      try {
-        node.waitProcessing();
-      } catch (InterruptedException e) {
-        log.info(
-            "Interrupted during wait processing url {}. Return result with already processed urls.",
-            node.getUrl()
-        );
-        return new Result(downloadedUrls, errors);
+  private void downloaded(Node node) {
+    log.debug("Add result: {}", node.getUrl());
+    listenerLock.readLock().lock();
+    try {
+      if (!returned) {
+        listener.onDownloaded(node.getUrl(), node.getNodeDepth());
       }
+    } catch (RuntimeException e) {
+      log.warn("Listener failed on downloaded url {}", node.getUrl(), e);
+    } finally {
+      listenerLock.readLock().unlock();
+    }
+    if (journal != null) {
+      releaseFromJournal(node, true, null);
+    }
+    finished(node);
+  }
 
-      if (node.getError() != null) {
-        log.debug("Node {} with error {}", node, node.getError());
-        errors.put(node.getUrl(), node.getError());
-      } else {
-        if (node.isRepeated() || node.isInterrupted()) {
-          continue;
-        }
-
-        log.debug("Add result: {}", node.getUrl());
-        downloadedUrls.add(node.getUrl());
-        log.debug("Add to queue child nodes: {}", node.getChilds());
-        queue.addAll(node.getChilds());
+  private void failed(Node node, IOException e) {
+    log.debug("Node {} with error {}", node, e);
+    listenerLock.readLock().lock();
+    try {
+      if (!returned) {
+        listener.onError(node.getUrl(), e);
       }
+    } catch (RuntimeException listenerError) {
+      log.warn("Listener failed on error of url {}", node.getUrl(), listenerError);
+    } finally {
+      listenerLock.readLock().unlock();
+    }
+    if (journal != null) {
+      releaseFromJournal(node, true, e);
     }
+    finished(node);
+  }
 
-    log.debug("Result downloaded size {}, error size {}", downloadedUrls.size(), errors.size());
-    return new Result(new ArrayList<>(downloadedUrls), errors);
+  private void interrupted(Node node) {
+    log.debug("Node {} interrupted", node);
+    if (journal != null) {
+      stopped = true;
+      releaseFromJournal(node, false, null);
+    }
+    finished(node);
+  }
+
+  private void finished(Node node) {
+    if (pendingNodes.decrementAndGet() == 0) {
+      log.debug("Last pending node {} finished", node);
+      completed.countDown();
+    }
   }
 }
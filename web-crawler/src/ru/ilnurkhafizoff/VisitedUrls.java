@@ -0,0 +1,43 @@
+package ru.ilnurkhafizoff;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Set of urls the crawler has already taken. Implementations are thread-safe.
+ */
+public interface VisitedUrls {
+
+  /**
+   * Marks url as visited.
+   *
+   * @return {@code true} if url was not visited before, so the caller owns it.
+   */
+  boolean add(String url);
+
+  /**
+   * Marks url as visited, implementations may use its parsed parts.
+   *
+   * @return {@code true} if url was not visited before, so the caller owns it.
+   */
+  default boolean add(CanonicalUrl url) {
+    return add(url.getUrl());
+  }
+
+  /**
+   * Exact set keeping every url string.
+   */
+  static VisitedUrls exact() {
+    Set<String> urls = ConcurrentHashMap.newKeySet();
+    return urls::add;
+  }
+
+  /**
+   * Compact set keeping 64-bit url fingerprints off-heap, may rarely treat a new url as visited.
+   *
+   * @see FingerprintVisitedUrls
+   */
+  static VisitedUrls fingerprints() {
+    return new FingerprintVisitedUrls();
+  }
+}
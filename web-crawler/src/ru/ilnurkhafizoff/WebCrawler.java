@@ -2,17 +2,21 @@ package ru.ilnurkhafizoff;
 
 import static java.lang.Integer.parseInt;
 
-import info.kgeorgiy.java.advanced.crawler.CachingDownloader;
 import info.kgeorgiy.java.advanced.crawler.Crawler;
 import info.kgeorgiy.java.advanced.crawler.Downloader;
 import info.kgeorgiy.java.advanced.crawler.Result;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,35 +27,145 @@ public class WebCrawler implements Crawler {
   private static final Path DOWNLOADED_URLS_DIR =
       Paths.get(System.getProperty("user.home") + File.pathSeparator + "khafizov-lab8-downloads");
 
+  private static final AtomicInteger instances = new AtomicInteger();
+
+  // exact sets for in-memory crawls, fingerprints for journaled ones
+  private static final Supplier<VisitedUrls> DEFAULT_VISITED_URLS = VisitedUrls::exact;
+
   private final ExecutorService downloadExecutors;
   private final ExecutorService extractExecutors;
 
   private final DownloadHandler downloadHandler;
+  private final Supplier<VisitedUrls> visitedUrls;
+  private final CrawlMetrics metrics = new CrawlMetrics();
 
   public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
-    log.debug(
-        "Create ru.ilnurkhafizoff.WebCrawler with {} downloaders threads and {} extractors threads {}",
-        downloaders, extractors);
+    this(downloader, downloaders, extractors, perHost, DEFAULT_VISITED_URLS);
+  }
+
+  /**
+   * @param visitedUrls creates visited url set for every crawl, e.g. {@link
+   * VisitedUrls#fingerprints()} for very large crawls.
+   */
+  public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+      Supplier<VisitedUrls> visitedUrls) {
+    this(downloader, downloaders, extractors, perHost, visitedUrls, HostLimits.fixed());
+  }
+
+  /**
+   * @param hostLimits request rate and adaptive concurrency of every host, within perHost.
+   */
+  public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+      Supplier<VisitedUrls> visitedUrls, HostLimits hostLimits) {
+    this(downloader, newFixedThreadPool(downloaders, "DownloaderThread-%s"), extractors, perHost,
+        visitedUrls, hostLimits);
+  }
 
-    downloadExecutors = Executors
-        .newFixedThreadPool(downloaders, new NamingThreadFactory("DownloaderThread-%s"));
-    extractExecutors = Executors
-        .newFixedThreadPool(extractors, new NamingThreadFactory("ExtractorThread-%s"));
+  private WebCrawler(Downloader downloader, ExecutorService downloadExecutors, int extractors,
+      int perHost, Supplier<VisitedUrls> visitedUrls, HostLimits hostLimits) {
+    log.debug("Create ru.ilnurkhafizoff.WebCrawler with {} extractors threads, downloads on {}",
+        extractors, downloadExecutors.getClass().getSimpleName());
 
-    this.downloadHandler = new DownloadHandler(downloader, perHost);
+    this.downloadExecutors = downloadExecutors;
+    extractExecutors = newFixedThreadPool(extractors, "ExtractorThread-%s");
+
+    this.downloadHandler =
+        new DownloadHandler(downloader, downloadExecutors, perHost, hostLimits, metrics);
+    this.visitedUrls = visitedUrls;
+
+    metrics.watch(downloadHandler, downloadExecutors, extractExecutors);
+  }
+
+  /**
+   * Creates a crawler that runs every download on its own thread, virtual if the runtime supports
+   * them, with at most maxDownloads downloads running at once. Waiting for a per-host slot costs
+   * no thread, so maxDownloads may be far larger than a pool of platform threads.
+   *
+   * @see ThreadPerTaskExecutor
+   */
+  public static WebCrawler threadPerDownload(Downloader downloader, int maxDownloads,
+      int extractors, int perHost, HostLimits hostLimits) {
+    return new WebCrawler(downloader,
+        new ThreadPerTaskExecutor(ThreadPerTaskExecutor.newThreadFactory("Downloader-"),
+            maxDownloads),
+        extractors, perHost, DEFAULT_VISITED_URLS, hostLimits);
+  }
+
+  /**
+   * Returns live metrics of this crawler.
+   */
+  public CrawlMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Registers the metrics of this crawler as an MXBean named by {@link
+   * CrawlMetrics#getObjectName()}. The platform MBean server keeps the crawler reachable until it
+   * is closed. Does nothing if the metrics are registered already.
+   */
+  public void registerMBean() {
+    synchronized (metrics) {
+      if (metrics.getObjectName() == null) {
+        metrics.register("WebCrawler-" + instances.incrementAndGet());
+      }
+    }
   }
 
   @Override
   public Result download(String url, int depth) {
     return
-        new UrlProcessor(extractExecutors, downloadExecutors, downloadHandler)
+        new UrlProcessor(extractExecutors, downloadHandler, visitedUrls.get())
             .processUrl(url, depth);
   }
 
+  /**
+   * Crawls like {@link #download(String, int)}, but reports every page to listener as soon as it
+   * is processed instead of collecting all of them into a {@link Result}. Returns once the crawl is
+   * complete or the calling thread is interrupted, the listener is not called after that.
+   */
+  public void download(String url, int depth, CrawlListener listener) {
+    new UrlProcessor(extractExecutors, downloadHandler, visitedUrls.get())
+        .processUrl(url, depth, listener);
+  }
+
+  /**
+   * Crawls like {@link #download(String, int)}, keeping the frontier and finished pages in a
+   * {@link CrawlJournal} in journalDirectory. If the directory holds the journal of an unfinished
+   * crawl from the same url to the same depth, that crawl is resumed and the result includes pages
+   * processed before.
+   *
+   * <p>Unless the crawler was created with its own visited url sets, the crawl keeps only
+   * {@link VisitedUrls#fingerprints() fingerprints} of visited urls, so its memory stays small
+   * however large the frontier grows.
+   */
+  public Result download(String url, int depth, Path journalDirectory) throws IOException {
+    ResultCollector collector = new ResultCollector();
+    download(url, depth, collector, journalDirectory);
+    return collector.toResult();
+  }
+
+  /**
+   * Crawls like {@link #download(String, int, Path)}, reporting pages to listener. Pages processed
+   * before a resume are reported first.
+   */
+  public void download(String url, int depth, CrawlListener listener, Path journalDirectory)
+      throws IOException {
+    try (CrawlJournal journal = new CrawlJournal(journalDirectory)) {
+      VisitedUrls visited =
+          visitedUrls == DEFAULT_VISITED_URLS ? VisitedUrls.fingerprints() : visitedUrls.get();
+      new UrlProcessor(extractExecutors, downloadHandler, visited, journal)
+          .processUrl(url, depth, listener);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
   @Override
   public void close() {
     extractExecutors.shutdown();
     downloadExecutors.shutdown();
+    downloadHandler.close();
+    metrics.unregister();
 
     try {
       if (!extractExecutors.awaitTermination(20, TimeUnit.SECONDS)) {
@@ -79,10 +193,14 @@ public class WebCrawler implements Crawler {
     try {
       CrawlingContext crawlingContext = CrawlingContext.parseArgs(args);
 
-      try (WebCrawler webCrawler = new WebCrawler(
-          new CachingDownloader(DOWNLOADED_URLS_DIR), crawlingContext.downloads,
-          crawlingContext.extractors, crawlingContext.perHost
-      )) {
+      try (SegmentCachingDownloader downloader =
+          new SegmentCachingDownloader(DOWNLOADED_URLS_DIR);
+          WebCrawler webCrawler = new WebCrawler(
+              downloader, crawlingContext.downloads,
+              crawlingContext.extractors, crawlingContext.perHost, VisitedUrls::exact,
+              HostLimits.adaptive(crawlingContext.requestsPerSecond)
+          )) {
+        webCrawler.registerMBean();
         webCrawler.download(crawlingContext.rootUrl, 4);
       }
     } catch (Exception e) {
@@ -90,12 +208,18 @@ public class WebCrawler implements Crawler {
     }
   }
 
+  private static ThreadPoolExecutor newFixedThreadPool(int threads, String nameFormat) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), new NamingThreadFactory(nameFormat));
+  }
+
   private static class CrawlingContext {
 
     private String rootUrl;
     private int downloads = 20;
     private int extractors = 20;
     private int perHost = 10;
+    private double requestsPerSecond = 10;
 
     private CrawlingContext() {
     }
@@ -116,6 +240,10 @@ public class WebCrawler implements Crawler {
 
           if (args.length > 3) {
             result.perHost = parseInt(args[3]);
+
+            if (args.length > 4) {
+              result.requestsPerSecond = Double.parseDouble(args[4]);
+            }
           }
         }
       }
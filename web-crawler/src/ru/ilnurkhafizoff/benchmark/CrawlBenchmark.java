@@ -0,0 +1,278 @@
+package ru.ilnurkhafizoff.benchmark;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader.Page;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import ru.ilnurkhafizoff.CrawlMetrics;
+import ru.ilnurkhafizoff.WebCrawler;
+
+/**
+ * Measures crawl throughput of {@link WebCrawler} on a site bundled for {@link ReplayDownloader},
+ * for every combination of downloaders, extractors and perHost.
+ *
+ * <p>Pages are replayed with download and extract delays drawn from configurable distributions.
+ * Every configuration is crawled once to warm up and then {@code rounds} times; the median round
+ * is reported with its time to completion, pages per second, average busy share of the downloader
+ * and extractor threads, and peak used heap. Every round must crawl exactly the pages of the
+ * site within depth.
+ *
+ * <p>Arguments are {@code name=value} pairs, e.g. {@code site=neerc.ifmo.ru depth=3
+ * download=exp:5 extract=const:1 downloaders=1,8,32 extractors=1,4 perHost=1,8 rounds=5}. Delays
+ * are in milliseconds: {@code const:d}, {@code uniform:min:max}, {@code exp:mean} or {@code
+ * lognormal:median:sigma}.
+ */
+public class CrawlBenchmark {
+
+  private static final long SAMPLE_MILLIS = 5;
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException,
+      InterruptedException {
+    Map<String, String> options = new HashMap<>();
+    options.put("site", "www.kgeorgiy.info");
+    options.put("depth", "4");
+    options.put("download", "uniform:1:10");
+    options.put("extract", "uniform:1:10");
+    options.put("downloaders", "1,4,16,64");
+    options.put("extractors", "1,4,16");
+    options.put("perHost", "1,4,16");
+    options.put("rounds", "3");
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (equals < 0 || !options.containsKey(arg.substring(0, equals))) {
+        throw new IllegalArgumentException("Unknown option " + arg + ", expected one of "
+            + options.keySet());
+      }
+      options.put(arg.substring(0, equals), arg.substring(equals + 1));
+    }
+
+    Map<String, Page> pages = load(options.get("site") + ".ser");
+    int depth = Integer.parseInt(options.get("depth"));
+    String root = pages.entrySet().stream()
+        .filter(page -> page.getValue().depth == 0)
+        .map(Map.Entry::getKey)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("No root page"));
+    long expectedPages = pages.values().stream().filter(page -> page.depth < depth).count();
+
+    Delay downloadDelay = Delay.parse(options.get("download"));
+    Delay extractDelay = Delay.parse(options.get("extract"));
+    int rounds = Integer.parseInt(options.get("rounds"));
+
+    System.out.format("%s to depth %d: %d pages, download %s ms, extract %s ms, %d rounds%n",
+        root, depth, expectedPages, options.get("download"), options.get("extract"), rounds);
+    System.out.println("downloaders  extractors  perHost  time ms  pages/s  "
+        + "download busy  extract busy  peak heap MiB");
+
+    for (int downloaders : parseList(options.get("downloaders"))) {
+      for (int extractors : parseList(options.get("extractors"))) {
+        for (int perHost : parseList(options.get("perHost"))) {
+          List<Round> measured = new ArrayList<>();
+          for (int round = 0; round <= rounds; round++) {
+            Round result = crawl(new DelayedReplay(pages, downloadDelay, extractDelay), root, depth,
+                downloaders, extractors, perHost);
+            if (result.pages != expectedPages) {
+              throw new AssertionError(String.format("Crawled %d pages instead of %d",
+                  result.pages, expectedPages));
+            }
+            if (round > 0) {
+              measured.add(result);
+            }
+          }
+
+          measured.sort((a, b) -> Long.compare(a.nanos, b.nanos));
+          Round median = measured.get(measured.size() / 2);
+          System.out.format("%11d  %10d  %7d  %7.0f  %7.0f  %12.0f%%  %11.0f%%  %13.1f%n",
+              downloaders, extractors, perHost, median.nanos / 1e6,
+              median.pages / (median.nanos / 1e9), 100 * median.downloadBusy / downloaders,
+              100 * median.extractBusy / extractors, median.peakHeap / 1024.0 / 1024.0);
+        }
+      }
+    }
+  }
+
+  private static Round crawl(Downloader downloader, String root, int depth, int downloaders,
+      int extractors, int perHost) throws InterruptedException {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    System.gc();
+
+    try (WebCrawler crawler = new WebCrawler(downloader, downloaders, extractors, perHost)) {
+      CrawlMetrics metrics = crawler.getMetrics();
+      Sampler sampler = new Sampler(metrics, memory);
+      sampler.start();
+
+      long start = System.nanoTime();
+      Result result = crawler.download(root, depth);
+      long nanos = System.nanoTime() - start;
+
+      sampler.interrupt();
+      sampler.join();
+      return new Round(nanos, result.getDownloaded().size() + result.getErrors().size(),
+          sampler.average(sampler.downloadBusy), sampler.average(sampler.extractBusy),
+          sampler.peakHeap);
+    }
+  }
+
+  private static List<Integer> parseList(String values) {
+    List<Integer> result = new ArrayList<>();
+    for (String value : values.split(",")) {
+      result.add(Integer.parseInt(value.trim()));
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Page> load(String fileName)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream is = new ObjectInputStream(
+        new GZIPInputStream(ReplayDownloader.class.getResourceAsStream(fileName)))) {
+      return (Map<String, Page>) is.readObject();
+    }
+  }
+
+  private static void sleep(long micros) {
+    try {
+      TimeUnit.MICROSECONDS.sleep(micros);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Replays bundled pages like {@link ReplayDownloader}, with delays drawn from distributions.
+   */
+  private static class DelayedReplay implements Downloader {
+
+    private final Map<String, Page> pages;
+    private final Delay downloadDelay;
+    private final Delay extractDelay;
+
+    DelayedReplay(Map<String, Page> pages, Delay downloadDelay, Delay extractDelay) {
+      this.pages = pages;
+      this.downloadDelay = downloadDelay;
+      this.extractDelay = extractDelay;
+    }
+
+    @Override
+    public Document download(String url) throws IOException {
+      Page page = pages.get(url);
+      if (page == null) {
+        throw new AssertionError("Unknown page " + url);
+      }
+      sleep(downloadDelay.nextMicros());
+      if (page.exception != null) {
+        throw page.exception;
+      }
+      return () -> {
+        sleep(extractDelay.nextMicros());
+        return page.links;
+      };
+    }
+  }
+
+  /**
+   * Distribution of delays in microseconds.
+   */
+  private interface Delay {
+
+    long nextMicros();
+
+    static Delay parse(String spec) {
+      String[] parts = spec.split(":");
+      double[] millis = Arrays.stream(parts).skip(1).mapToDouble(Double::parseDouble).toArray();
+      switch (parts[0]) {
+        case "const":
+          return () -> micros(millis[0]);
+        case "uniform":
+          return () -> micros(millis[0]
+              + ThreadLocalRandom.current().nextDouble() * (millis[1] - millis[0]));
+        case "exp":
+          return () -> micros(-millis[0] * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        case "lognormal":
+          return () -> micros(
+              millis[0] * Math.exp(millis[1] * ThreadLocalRandom.current().nextGaussian()));
+        default:
+          throw new IllegalArgumentException("Unknown delay distribution " + spec);
+      }
+    }
+
+    static long micros(double millis) {
+      return Math.round(millis * 1000);
+    }
+  }
+
+  /**
+   * Samples busy threads and used heap of a running crawl.
+   */
+  private static class Sampler extends Thread {
+
+    private final CrawlMetrics metrics;
+    private final MemoryMXBean memory;
+
+    private long samples;
+    private long downloadBusy;
+    private long extractBusy;
+    private long peakHeap;
+
+    Sampler(CrawlMetrics metrics, MemoryMXBean memory) {
+      super("BenchmarkSampler");
+      setDaemon(true);
+      this.metrics = metrics;
+      this.memory = memory;
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        sample();
+        try {
+          Thread.sleep(SAMPLE_MILLIS);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+      sample();
+    }
+
+    private void sample() {
+      samples++;
+      downloadBusy += metrics.getActiveDownloadThreads();
+      extractBusy += metrics.getActiveExtractThreads();
+      peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    double average(long total) {
+      return samples == 0 ? 0 : (double) total / samples;
+    }
+  }
+
+  private static class Round {
+
+    private final long nanos;
+    private final long pages;
+    private final double downloadBusy;
+    private final double extractBusy;
+    private final long peakHeap;
+
+    Round(long nanos, long pages, double downloadBusy, double extractBusy, long peakHeap) {
+      this.nanos = nanos;
+      this.pages = pages;
+      this.downloadBusy = downloadBusy;
+      this.extractBusy = extractBusy;
+      this.peakHeap = peakHeap;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package ru.ilnurkhafizoff.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader.Page;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import ru.ilnurkhafizoff.LinkExtractor;
+
+/**
+ * Compares {@link LinkExtractor#STREAMING} with {@link LinkExtractor#JSOUP} on the sites bundled
+ * for {@link ReplayDownloader}.
+ *
+ * <p>Replays keep links only, so every page is rendered back to HTML with its links in varied
+ * markup, among comments, scripts and text. Both extractors must return the same links for every
+ * page, then their single-thread throughput and allocation per page are measured.
+ */
+public class LinkTokenizerBenchmark {
+
+  private static final String[] SITES =
+      {"en.ifmo.ru", "neerc.ifmo.ru", "www.ifmo.ru", "www.kgeorgiy.info"};
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    List<URI> urls = new ArrayList<>();
+    List<byte[]> pages = new ArrayList<>();
+    for (String site : SITES) {
+      for (Map.Entry<String, Page> page : load(site + ".ser").entrySet()) {
+        if (page.getValue().exception == null && page.getValue().links != null) {
+          urls.add(URI.create(page.getKey()));
+          pages.add(render(page.getKey(), page.getValue().links).getBytes(UTF_8));
+        }
+      }
+    }
+
+    PrintStream out = System.out;
+    // jsoup extraction prints every page
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+    }));
+
+    int mismatches = 0;
+    for (int i = 0; i < pages.size(); i++) {
+      List<String> expected = extract(LinkExtractor.JSOUP, urls.get(i), pages.get(i));
+      List<String> actual = extract(LinkExtractor.STREAMING, urls.get(i), pages.get(i));
+      if (!expected.equals(actual)) {
+        mismatches++;
+        out.println("Mismatch on " + urls.get(i) + "\n  jsoup:     " + expected
+            + "\n  streaming: " + actual);
+      }
+    }
+
+    out.format("%d pages, %d mismatches%n", pages.size(), mismatches);
+    out.println("extractor  pages/s  KiB allocated/page");
+    measure(out, "jsoup", LinkExtractor.JSOUP, urls, pages);
+    measure(out, "streaming", LinkExtractor.STREAMING, urls, pages);
+    System.setOut(out);
+  }
+
+  private static void measure(PrintStream out, String name, LinkExtractor extractor,
+      List<URI> urls, List<byte[]> pages) throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    double best = 0;
+    long allocated = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+      long begin = System.nanoTime();
+      for (int i = 0; i < pages.size(); i++) {
+        extract(extractor, urls.get(i), pages.get(i));
+      }
+      long elapsed = System.nanoTime() - begin;
+      allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+      best = Math.max(best, pages.size() / (elapsed / 1e9));
+    }
+
+    out.format("%-9s  %7.0f  %18.1f%n", name, best, allocated / 1024.0 / pages.size());
+  }
+
+  private static List<String> extract(LinkExtractor extractor, URI url, byte[] page)
+      throws IOException {
+    return extractor.extractLinks(url, new ByteArrayInputStream(page));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Page> load(String fileName)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream is = new ObjectInputStream(
+        new GZIPInputStream(ReplayDownloader.class.getResourceAsStream(fileName)))) {
+      return (Map<String, Page>) is.readObject();
+    }
+  }
+
+  private static String render(String url, List<String> links) {
+    URI uri = URI.create(url);
+    String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+
+    StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>")
+        .append(url).append("</title>\n<style>a[href] { color: #333 }</style>\n")
+        .append("<script>var menu = '<a href=\"http://script.invalid/\">';</script>\n")
+        .append("</head><body>\n<!-- <a href=\"http://comment.invalid/\">old</a> -->\n");
+
+    for (int i = 0; i < links.size(); i++) {
+      String link = links.get(i);
+      if (i % 3 == 0 && link.startsWith(origin + "/")) {
+        link = link.substring(origin.length());
+      }
+      String href = link.replace("&", "&amp;");
+
+      html.append("<p class=\"text\">Paragraph ").append(i)
+          .append(" with <b>markup</b> &amp; entities &lt; text &gt;.</p>\n");
+      switch (i % 4) {
+        case 0:
+          html.append("<a href=\"").append(href).append("\">link</a>\n");
+          break;
+        case 1:
+          html.append("<A HREF='").append(href).append("' class=nav>link</A>\n");
+          break;
+        case 2:
+          html.append("<a class=\"x\" title=\"a > b\"\n   href = \"").append(href)
+              .append("\" >link</a>\n");
+          break;
+        default:
+          html.append("<div><span><a id=\"l").append(i).append("\" href=\"").append(href)
+              .append("\"><img src=\"i.png\" alt=\"\"></a></span></div>\n");
+          break;
+      }
+    }
+    return html.append("</body></html>\n").toString();
+  }
+}
@@ -0,0 +1,103 @@
+package ru.ilnurkhafizoff.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import ru.ilnurkhafizoff.FingerprintVisitedUrls;
+
+/**
+ * Contention benchmark of the visited-url set used by {@link ru.ilnurkhafizoff.UrlProcessor}.
+ * Compares the former read/write-locked {@link HashSet} with the lock-free
+ * {@link ConcurrentHashMap#newKeySet()} under the crawler access pattern: every extractor thread
+ * offers discovered links, most of which were already seen. The compact
+ * {@link FingerprintVisitedUrls} is measured as well.
+ *
+ * <p>Usage: {@code VisitedSetBenchmark [maxThreads] [operationsPerThread]}
+ */
+public class VisitedSetBenchmark {
+
+  private static final int DISTINCT_URLS = 200_000;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws InterruptedException {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+    int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+    String[] urls = new String[DISTINCT_URLS];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = "http://host" + (i % 100) + ".example.com/page/" + i;
+    }
+
+    System.out.println("threads  rw-lock Mops/s  lock-free Mops/s  fingerprint Mops/s");
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      double locked = best(() -> lockedAdd(), urls, threads, operations);
+      double lockFree = best(() -> ConcurrentHashMap.<String>newKeySet()::add, urls, threads,
+          operations);
+      double fingerprint = best(() -> new FingerprintVisitedUrls()::add, urls, threads,
+          operations);
+      System.out.format("%7d  %14.2f  %16.2f  %18.2f%n", threads, locked, lockFree, fingerprint);
+    }
+  }
+
+  // The check-then-check-and-add sequence UrlProcessor used before
+  private static Predicate<String> lockedAdd() {
+    Set<String> set = new HashSet<>();
+    ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    return url -> {
+      rwLock.readLock().lock();
+      boolean processedAlready = set.contains(url);
+      rwLock.readLock().unlock();
+
+      if (!processedAlready) {
+        rwLock.writeLock().lock();
+        processedAlready = !set.add(url);
+        rwLock.writeLock().unlock();
+      }
+      return !processedAlready;
+    };
+  }
+
+  private static double best(Supplier<Predicate<String>> sets, String[] urls, int threads,
+      int operations) throws InterruptedException {
+    double best = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      best = Math.max(best, run(sets.get(), urls, threads, operations));
+    }
+    return best;
+  }
+
+  private static double run(Predicate<String> add, String[] urls, int threads, int operations)
+      throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < operations; i++) {
+          add.test(urls[random.nextInt(urls.length)]);
+        }
+      });
+      workers[t].start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    long elapsed = System.nanoTime() - begin;
+
+    return (double) threads * operations / elapsed * 1e3;
+  }
+}
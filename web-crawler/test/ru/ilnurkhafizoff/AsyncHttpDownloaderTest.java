@@ -0,0 +1,206 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncHttpDownloaderTest {
+
+  private static final int PAGES = 64;
+
+  static {
+    // otherwise the server delays every body write behind the header write
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private ExecutorService serverThreads;
+  private HttpServer server;
+  private String base;
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    serverThreads = Executors.newCachedThreadPool();
+    server.setExecutor(serverThreads);
+
+    server.createContext("/page/", exchange -> {
+      int page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+      StringBuilder html = new StringBuilder("<html><body>");
+      for (int child = 2 * page; child <= 2 * page + 1 && child < PAGES; child++) {
+        html.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a>");
+      }
+      respond(exchange, 200, html.append("</body></html>").toString(), false);
+    });
+    server.createContext("/chunked", exchange ->
+        respond(exchange, 200, "<a href=\"page/1\">1</a><a href=\"#top\">top</a>", true));
+    server.createContext("/redirect", exchange -> {
+      exchange.getResponseHeaders().add("Location", "/page/1");
+      respond(exchange, 302, "", false);
+    });
+    server.createContext("/missing", exchange -> respond(exchange, 404, "Not Found", false));
+
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+    serverThreads.shutdownNow();
+  }
+
+  @Test
+  public void testDownloadAndExtractLinks() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      Document document = downloader.download(base + "/page/1");
+
+      assertEquals(Arrays.asList(base + "/page/2", base + "/page/3"), document.extractLinks());
+    }
+  }
+
+  @Test
+  public void testChunkedResponse() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      Document document = downloader.download(base + "/chunked");
+
+      assertEquals(Arrays.asList(base + "/page/1", base + "/chunked"), document.extractLinks());
+    }
+  }
+
+  @Test
+  public void testKeepAlive() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      for (int page = 1; page < 20; page++) {
+        downloader.download(base + "/page/" + page);
+      }
+    }
+
+    assertEquals(1, clientPorts.size());
+  }
+
+  @Test
+  public void testRedirect() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      Document document = downloader.download(base + "/redirect");
+
+      assertEquals(Arrays.asList(base + "/page/2", base + "/page/3"), document.extractLinks());
+    }
+  }
+
+  @Test
+  public void testErrorStatus() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      downloader.download(base + "/missing");
+      fail("404 should fail the download");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("404"));
+    }
+  }
+
+  @Test
+  public void testMalformedContentLength() throws IOException, InterruptedException {
+    try (ServerSocket malformed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        AsyncHttpDownloader downloader = new AsyncHttpDownloader()) {
+      Thread server = new Thread(() -> {
+        try (Socket socket = malformed.accept()) {
+          BufferedReader request =
+              new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII));
+          String line;
+          while ((line = request.readLine()) != null && !line.isEmpty()) {
+            // skip the request headers
+          }
+          socket.getOutputStream().write(("HTTP/1.1 200 OK\r\n"
+              + "Content-Length: 12abc\r\n"
+              + "\r\n"
+              + "<html></html>").getBytes(US_ASCII));
+        } catch (IOException e) {
+          // the client gave up
+        }
+      });
+      server.start();
+
+      try {
+        downloader.download("http://127.0.0.1:" + malformed.getLocalPort() + "/");
+        fail("malformed Content-Length should fail the download");
+      } catch (IOException e) {
+        // only this download failed
+      }
+      server.join();
+
+      Document document = downloader.download(base + "/page/1");
+      assertEquals(Arrays.asList(base + "/page/2", base + "/page/3"), document.extractLinks());
+    }
+  }
+
+  @Test
+  public void testManyInFlight() throws IOException {
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader(4, 1, TimeUnit.MINUTES)) {
+      List<CompletableFuture<Document>> downloads = IntStream.range(0, 1000)
+          .mapToObj(i -> downloader.downloadAsync(base + "/page/" + i % PAGES))
+          .collect(toList());
+
+      for (CompletableFuture<Document> download : downloads) {
+        download.join().extractLinks();
+      }
+    }
+
+    assertTrue("connections " + clientPorts.size(), clientPorts.size() <= 4);
+  }
+
+  @Test
+  public void testCrawl() throws IOException {
+    Result result;
+    try (AsyncHttpDownloader downloader = new AsyncHttpDownloader();
+        WebCrawler crawler = new WebCrawler(downloader, 2, 2, 4)) {
+      result = crawler.download(base + "/page/1", 4);
+    }
+
+    Set<String> expected = IntStream.range(1, 16)
+        .mapToObj(page -> base + "/page/" + page)
+        .collect(toSet());
+    assertEquals(expected, result.getDownloaded().stream().collect(toSet()));
+    assertTrue(result.getErrors().isEmpty());
+  }
+
+  private void respond(HttpExchange exchange, int status, String body, boolean chunked)
+      throws IOException {
+    clientPorts.add(exchange.getRemoteAddress().getPort());
+
+    byte[] bytes = body.getBytes(UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+    exchange.sendResponseHeaders(status, chunked ? 0 : bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import org.junit.Test;
+
+public class CanonicalUrlTest {
+
+  @Test
+  public void testNormalized() throws MalformedURLException {
+    assertNormalized("http://example.com/a/c?q=1",
+        "HTTP://Example.COM:80/a/./b/../c?q=1#fragment");
+    assertNormalized("https://example.com/", "https://example.com:443");
+    assertNormalized("http://example.com:8080/", "http://example.com:8080");
+    assertNormalized("http://user@example.com/%41", "http://user@EXAMPLE.com/%41");
+
+    CanonicalUrl url = CanonicalUrl.of("HTTP://Example.COM/a#b");
+    assertEquals("HTTP://Example.COM/a#b", url.getUrl());
+    assertEquals(URI.create("http://example.com/a"), url.getUri());
+  }
+
+  @Test
+  public void testEquality() {
+    CanonicalUrl url = CanonicalUrl.of("http://example.com/a");
+    CanonicalUrl variant = CanonicalUrl.of("http://EXAMPLE.com:80/b/../a#top");
+
+    assertEquals(url, variant);
+    assertEquals(url.hashCode(), variant.hashCode());
+    assertNotEquals(url, CanonicalUrl.of("http://example.com/a/"));
+    assertNotEquals(url, CanonicalUrl.of("https://example.com/a"));
+  }
+
+  @Test
+  public void testMalformed() {
+    CanonicalUrl url = CanonicalUrl.of("not a url");
+
+    assertEquals("not a url", url.getNormalized());
+    assertEquals(url, CanonicalUrl.of("not a url"));
+    MalformedURLException first = null;
+    try {
+      url.getHost();
+      fail("malformed url has no host");
+    } catch (MalformedURLException e) {
+      first = e;
+    }
+    try {
+      url.getUri();
+      fail("malformed url has no uri");
+    } catch (MalformedURLException e) {
+      assertNotSame(first, e);
+      assertEquals(first.getMessage(), e.getMessage());
+    }
+  }
+
+  @Test
+  public void testSharedHost() throws MalformedURLException {
+    String host = CanonicalUrl.of("http://Shared.Example.com/a").getHost();
+
+    assertEquals("shared.example.com", host);
+    assertSame(host, CanonicalUrl.of("http://shared.example.com/b").getHost());
+
+    // later hosts are cached too, older ones give way
+    for (int i = 0; i < 10_000; i++) {
+      CanonicalUrl.of("http://host" + i + ".example.com/").getHost();
+    }
+    String later = CanonicalUrl.of("http://later.example.com/a").getHost();
+    assertSame(later, CanonicalUrl.of("http://later.example.com/b").getHost());
+  }
+
+  @Test
+  public void testFingerprintOfUrlAsFound() {
+    String url = "http://Example.com/a";
+
+    assertEquals(FingerprintVisitedUrls.fingerprint(url), CanonicalUrl.of(url).getFingerprint());
+  }
+
+  private static void assertNormalized(String expected, String url) {
+    assertEquals(url, expected, CanonicalUrl.of(url).getNormalized());
+  }
+}
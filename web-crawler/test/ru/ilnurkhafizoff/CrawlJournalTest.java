@@ -0,0 +1,183 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CrawlJournalTest {
+
+  private static final String URL = "http://neerc.ifmo.ru/subregions/index.html";
+  private static final int DEPTH = 3;
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("crawl-journal");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Collections.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void testSmallFrontierWindow() throws IOException {
+    ReplayDownloader downloader = new ReplayDownloader(URL, DEPTH, 1, 1);
+    ExecutorService downloaders = Executors.newFixedThreadPool(4);
+    ExecutorService extractors = Executors.newFixedThreadPool(4);
+
+    Result result;
+    try (CrawlJournal journal = new CrawlJournal(directory, 2)) {
+      result = new UrlProcessor(extractors, new DownloadHandler(downloader, downloaders, 2),
+          VisitedUrls.exact(), journal).processUrl(URL, DEPTH);
+    } finally {
+      downloaders.shutdownNow();
+      extractors.shutdownNow();
+    }
+
+    assertSameUrls(downloader.expected(DEPTH), result);
+  }
+
+  @Test
+  public void testResume() throws IOException {
+    ReplayDownloader first = new ReplayDownloader(URL, DEPTH, 1, 1);
+    AtomicInteger downloads = new AtomicInteger();
+    WebCrawler[] crawler = new WebCrawler[1];
+    Downloader stopping = url -> {
+      if (downloads.incrementAndGet() == 20) {
+        new Thread(crawler[0]::close).start();
+      }
+      return first.download(url);
+    };
+
+    Result stopped;
+    try (WebCrawler stoppingCrawler = new WebCrawler(stopping, 4, 4, 2)) {
+      crawler[0] = stoppingCrawler;
+      stopped = stoppingCrawler.download(URL, DEPTH, directory);
+    }
+    Set<String> processedBefore = urls(stopped);
+    assertFalse(processedBefore.isEmpty());
+    assertTrue(processedBefore.size() < urls(first.expected(DEPTH)).size());
+
+    ReplayDownloader second = new ReplayDownloader(URL, DEPTH, 1, 1);
+    Downloader checking = url -> {
+      assertFalse("Downloaded again " + url, processedBefore.contains(url));
+      return second.download(url);
+    };
+
+    Result resumed;
+    try (WebCrawler resumingCrawler = new WebCrawler(checking, 4, 4, 2)) {
+      resumed = resumingCrawler.download(URL, DEPTH, directory);
+    }
+
+    assertSameUrls(second.expected(DEPTH), resumed);
+  }
+
+  @Test
+  public void testResumeAfterCrash() throws IOException {
+    Path crash = directory.resolve("crash");
+    Path journalDirectory = directory.resolve("journal");
+    ReplayDownloader first = new ReplayDownloader(URL, DEPTH, 1, 1);
+    AtomicInteger downloads = new AtomicInteger();
+    // files as a crash would leave them, the done log is copied before the frontier it refers to
+    Downloader crashing = url -> {
+      if (downloads.incrementAndGet() == 100) {
+        Files.createDirectories(crash);
+        for (String file : new String[]{"crawl", "checkpoint", "done.log", "frontier.log"}) {
+          Path source = journalDirectory.resolve(file);
+          if (Files.exists(source)) {
+            Files.copy(source, crash.resolve(file));
+          }
+        }
+      }
+      return first.download(url);
+    };
+
+    // records are written out almost as soon as they are appended
+    try (CrawlJournal journal = new CrawlJournal(journalDirectory, 16, 64)) {
+      crawl(crashing, journal);
+    }
+    assertTrue(Files.exists(crash.resolve("done.log")));
+
+    ReplayDownloader second = new ReplayDownloader(URL, DEPTH, 1, 1);
+    Result resumed;
+    try (CrawlJournal journal = new CrawlJournal(crash)) {
+      resumed = crawl(second, journal);
+    }
+
+    assertSameUrls(second.expected(DEPTH), resumed);
+  }
+
+  @Test(timeout = 10_000)
+  public void testRecordLongerThanReadBuffer() throws IOException {
+    String root = "http://example.com/";
+    char[] path = new char[200_000];
+    Arrays.fill(path, 'a');
+    List<String> links = Arrays.asList(root + new String(path), root + "short");
+    Downloader downloader = url -> url.equals(root) ? () -> links : Collections::emptyList;
+
+    Result result;
+    try (WebCrawler crawler = new WebCrawler(downloader, 2, 2, 2)) {
+      result = crawler.download(root, 2, directory);
+    }
+
+    Set<String> expected = new HashSet<>(links);
+    expected.add(root);
+    assertEquals(expected, new HashSet<>(result.getDownloaded()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOtherCrawl() throws IOException {
+    try (WebCrawler crawler = new WebCrawler(new ReplayDownloader(URL, DEPTH, 1, 1), 1, 1, 1)) {
+      crawler.download(URL, 1, directory);
+      crawler.download(URL, DEPTH, directory);
+    }
+  }
+
+  private static Result crawl(Downloader downloader, CrawlJournal journal) {
+    ExecutorService downloaders = Executors.newFixedThreadPool(4);
+    ExecutorService extractors = Executors.newFixedThreadPool(4);
+    try {
+      return new UrlProcessor(extractors, new DownloadHandler(downloader, downloaders, 2),
+          VisitedUrls.exact(), journal).processUrl(URL, DEPTH);
+    } finally {
+      downloaders.shutdownNow();
+      extractors.shutdownNow();
+    }
+  }
+
+  private static void assertSameUrls(Result expected, Result actual) {
+    assertEquals(new HashSet<>(expected.getDownloaded()), new HashSet<>(actual.getDownloaded()));
+    assertEquals(expected.getErrors().keySet(), actual.getErrors().keySet());
+  }
+
+  private static Set<String> urls(Result result) {
+    Set<String> urls = new HashSet<>(result.getDownloaded());
+    urls.addAll(result.getErrors().keySet());
+    return urls;
+  }
+}
@@ -0,0 +1,78 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+public class CrawlMetricsTest {
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value : new long[]{0, 1, 3, 4, 5, 7, 8, 100, 1_000_000, Long.MAX_VALUE / 3}) {
+      long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+      assertTrue(value + " <= " + upper, value <= upper);
+      assertTrue(value + " upper " + upper, upper <= value + value / 4 + 1);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(50));
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500_500, histogram.getMeanNanos(), 1e-6);
+    assertEquals(500_000, histogram.getPercentileNanos(50), 500_000 / 4);
+    assertEquals(990_000, histogram.getPercentileNanos(99), 990_000 / 4);
+  }
+
+  @Test
+  public void testCrawlMetrics() throws IOException, JMException {
+    String url = "http://neerc.ifmo.ru/subregions/index.html";
+    ReplayDownloader downloader = new ReplayDownloader(url, 3, 5, 5);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    Result result;
+    ObjectName name;
+    CrawlMetrics metrics;
+    try (WebCrawler crawler = new WebCrawler(downloader, 4, 4, 2)) {
+      metrics = crawler.getMetrics();
+      assertNull(metrics.getObjectName());
+      crawler.registerMBean();
+      name = metrics.getObjectName();
+      assertTrue(server.isRegistered(name));
+      result = crawler.download(url, 3);
+
+      assertEquals((long) result.getDownloaded().size(),
+          server.getAttribute(name, "PagesDownloaded"));
+    }
+
+    CrawlMetrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(result.getDownloaded().size(), snapshot.getPagesDownloaded());
+    assertEquals(result.getErrors().size(), snapshot.getDownloadErrors());
+    assertEquals(result.getErrors().size(),
+        snapshot.getErrorsByType().values().stream().mapToLong(Long::longValue).sum());
+    assertTrue(snapshot.getDownloadLatencyP50Millis() >= 1);
+    assertTrue(snapshot.getExtractLatencyP99Millis() >= 1);
+    Map<String, Integer> inFlight = snapshot.getInFlightByHost();
+    assertTrue(inFlight.toString(), inFlight.isEmpty());
+
+    assertFalse(server.isRegistered(name));
+    assertNull(metrics.getObjectName());
+  }
+}
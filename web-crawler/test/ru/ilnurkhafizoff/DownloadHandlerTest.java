@@ -0,0 +1,189 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class DownloadHandlerTest {
+
+  @Test
+  public void testPerHostLimit() throws InterruptedException {
+    int perHost = 3;
+    Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+    Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+    Downloader downloader = url -> {
+      String host = url.substring("http://".length(), url.indexOf('/', "http://".length()));
+      AtomicInteger hostRunning = running.computeIfAbsent(host, h -> new AtomicInteger());
+      maxRunning.computeIfAbsent(host, h -> new AtomicInteger())
+          .accumulateAndGet(hostRunning.incrementAndGet(), Math::max);
+      sleep(1);
+      hostRunning.decrementAndGet();
+      return Collections::emptyList;
+    };
+
+    ExecutorService downloaders = Executors.newFixedThreadPool(16);
+    CountDownLatch done = new CountDownLatch(400);
+    try (DownloadHandler handler = new DownloadHandler(downloader, downloaders, perHost)) {
+      for (int i = 0; i < 400; i++) {
+        handler.download("http://host" + i % 4 + "/page" + i,
+            document -> done.countDown(), e -> done.countDown(), done::countDown);
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(Collections.emptyMap(), handler.getInFlightByHost());
+      assertEquals(Collections.emptyMap(), handler.getQueuedByHost());
+    } finally {
+      downloaders.shutdown();
+    }
+
+    assertEquals(4, maxRunning.size());
+    maxRunning.forEach((host, max) ->
+        assertTrue(host + " ran " + max, max.get() <= perHost));
+  }
+
+  @Test
+  public void testBusyHostDoesNotParkThreads() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger slowStarted = new AtomicInteger();
+    Downloader downloader = url -> {
+      if (url.startsWith("http://slow/")) {
+        slowStarted.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return Collections::emptyList;
+    };
+
+    ExecutorService downloaders = Executors.newFixedThreadPool(4);
+    CountDownLatch fastDone = new CountDownLatch(20);
+    CountDownLatch slowDone = new CountDownLatch(50);
+    try (DownloadHandler handler = new DownloadHandler(downloader, downloaders, 2)) {
+      for (int i = 0; i < 50; i++) {
+        handler.download("http://slow/page" + i,
+            document -> slowDone.countDown(), e -> slowDone.countDown(), slowDone::countDown);
+      }
+      for (int i = 0; i < 20; i++) {
+        handler.download("http://fast" + i % 2 + "/page" + i,
+            document -> fastDone.countDown(), e -> fastDone.countDown(), fastDone::countDown);
+      }
+
+      // the slow host holds two of four threads, the rest serve the other hosts
+      assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+      assertEquals(2, slowStarted.get());
+      assertEquals(Collections.singletonMap("slow", 48), handler.getQueuedByHost());
+
+      release.countDown();
+      assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      downloaders.shutdown();
+    }
+  }
+
+  @Test
+  public void testHostQueueIsFifo() throws InterruptedException {
+    List<String> started = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch release = new CountDownLatch(1);
+    Downloader downloader = url -> {
+      started.add(url);
+      try {
+        // the first download holds the only slot until every url is queued
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections::emptyList;
+    };
+
+    ExecutorService downloaders = Executors.newFixedThreadPool(8);
+    List<String> urls = new ArrayList<>();
+    CountDownLatch done = new CountDownLatch(100);
+    try (DownloadHandler handler = new DownloadHandler(downloader, downloaders, 1)) {
+      for (int i = 0; i < 100; i++) {
+        String url = "http://example.com/page" + i;
+        urls.add(url);
+        handler.download(url,
+            document -> done.countDown(), e -> done.countDown(), done::countDown);
+      }
+      release.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      downloaders.shutdown();
+    }
+
+    assertEquals(urls, started);
+  }
+
+  @Test
+  public void testThrowingDownloaderFailsUrls() throws InterruptedException {
+    assertFailsEveryUrl(url -> {
+      throw new IllegalStateException("Broken downloader");
+    });
+  }
+
+  @Test
+  public void testThrowingAsyncDownloaderFailsUrls() throws InterruptedException {
+    assertFailsEveryUrl(new AsyncDownloader() {
+      @Override
+      public CompletableFuture<Document> downloadAsync(String url) {
+        throw new IllegalStateException("Broken downloader");
+      }
+
+      @Override
+      public Document download(String url) {
+        throw new AssertionError("Async downloads only");
+      }
+    });
+  }
+
+  // every url reaches onError with the exception, so the single slot of the host is freed each time
+  private static void assertFailsEveryUrl(Downloader downloader) throws InterruptedException {
+    ExecutorService downloaders = Executors.newFixedThreadPool(2);
+    Map<String, IOException> errors = new ConcurrentHashMap<>();
+    CountDownLatch done = new CountDownLatch(10);
+    try (DownloadHandler handler = new DownloadHandler(downloader, downloaders, 1)) {
+      for (int i = 0; i < 10; i++) {
+        String url = "http://example.com/page" + i;
+        handler.download(url, document -> done.countDown(), e -> {
+          errors.put(url, e);
+          done.countDown();
+        }, done::countDown);
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(Collections.emptyMap(), handler.getInFlightByHost());
+    } finally {
+      downloaders.shutdown();
+    }
+
+    assertEquals(10, errors.size());
+    errors.forEach((url, e) ->
+        assertTrue(url + " failed with " + e, e.getCause() instanceof IllegalStateException));
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class FingerprintVisitedUrlsTest {
+
+  @Test
+  public void testAddAndContains() {
+    FingerprintVisitedUrls urls = new FingerprintVisitedUrls();
+
+    assertFalse(urls.contains("http://example.com/"));
+    assertTrue(urls.add("http://example.com/"));
+    assertFalse(urls.add("http://example.com/"));
+    assertTrue(urls.add(CanonicalUrl.of("http://example.com/a")));
+    assertFalse(urls.add("http://example.com/a"));
+
+    assertTrue(urls.contains("http://example.com/"));
+    assertTrue(urls.contains("http://example.com/a"));
+    assertFalse(urls.contains("http://example.com/b"));
+    assertEquals(2, urls.size());
+  }
+
+  @Test
+  public void testGrow() {
+    FingerprintVisitedUrls urls = new FingerprintVisitedUrls();
+    // far more than 64 segments of 1024 slots hold without growing
+    int count = 500_000;
+
+    for (int i = 0; i < count; i++) {
+      assertTrue(urls.add(url(i)));
+    }
+
+    assertEquals(count, urls.size());
+    for (int i = 0; i < count; i++) {
+      assertTrue(url(i), urls.contains(url(i)));
+      assertFalse(url(i), urls.add(url(i)));
+    }
+    assertFalse(urls.contains(url(count)));
+  }
+
+  @Test
+  public void testConcurrentDuplicateAdds() throws InterruptedException {
+    FingerprintVisitedUrls urls = new FingerprintVisitedUrls();
+    int count = 100_000;
+    AtomicInteger added = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t * 7919;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        // every thread offers every url, starting at a different one
+        for (int i = 0; i < count; i++) {
+          if (urls.add(url((i + offset) % count))) {
+            added.incrementAndGet();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(count, added.get());
+    assertEquals(count, urls.size());
+  }
+
+  private static String url(int i) {
+    return "http://host" + i % 100 + ".example.com/page/" + i;
+  }
+}
@@ -0,0 +1,92 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class HostLimiterTest {
+
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testTokenBucket() {
+    HostLimiter limiter = new HostLimiter(new HostLimits(10, 2, false), 100, 0);
+
+    assertEquals(0, limiter.acquire(0));
+    assertEquals(0, limiter.acquire(0));
+    assertEquals(100 * MILLI, limiter.acquire(0), MILLI);
+    assertEquals(50 * MILLI, limiter.acquire(50 * MILLI), MILLI);
+    assertEquals(0, limiter.acquire(100 * MILLI));
+    // idle time refills the bucket up to the burst only
+    assertEquals(0, limiter.acquire(10_000 * MILLI));
+    assertEquals(0, limiter.acquire(10_000 * MILLI));
+    assertTrue(limiter.acquire(10_000 * MILLI) > 0);
+  }
+
+  @Test
+  public void testFixedLimit() {
+    HostLimiter limiter = new HostLimiter(HostLimits.fixed(), 7, 0);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, limiter.acquire(0));
+      limiter.completed(i * MILLI, true);
+    }
+    assertEquals(7, limiter.getLimit());
+  }
+
+  @Test
+  public void testAdaptiveLimit() {
+    HostLimiter limiter = new HostLimiter(new HostLimits(1000, 1000, true), 64, 0);
+    assertEquals(2, limiter.getLimit());
+
+    for (int i = 0; i < 200; i++) {
+      limiter.completed(10 * MILLI, false);
+    }
+    assertEquals(64, limiter.getLimit());
+
+    // every window of limit downloads halves the limit at most once
+    for (int i = 0; i < 32; i++) {
+      limiter.completed(10 * MILLI, true);
+    }
+    assertEquals(32, limiter.getLimit());
+
+    for (int i = 0; i < 200; i++) {
+      limiter.completed(100 * MILLI, false);
+    }
+    int slowLimit = limiter.getLimit();
+    assertTrue("limit " + slowLimit, slowLimit < 32);
+
+    // after congestion the limit grows by about one per window
+    for (int i = 0; i < 10 * slowLimit; i++) {
+      limiter.completed(100 * MILLI, false);
+    }
+    assertTrue("limit " + limiter.getLimit(), limiter.getLimit() <= slowLimit + 10);
+    assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > slowLimit);
+  }
+
+  @Test
+  public void testRateLimitedCrawl() throws IOException {
+    String url = "http://www.kgeorgiy.info";
+    ReplayDownloader downloader = new ReplayDownloader(url, 2, 1, 1);
+    Result result;
+    long start = System.nanoTime();
+    try (WebCrawler crawler = new WebCrawler(downloader, 8, 8, 8, VisitedUrls::exact,
+        new HostLimits(100, 5, true))) {
+      result = crawler.download(url, 2);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    Result expected = downloader.expected(2);
+    assertEquals(new HashSet<>(expected.getDownloaded()), new HashSet<>(result.getDownloaded()));
+    assertEquals(expected.getErrors(), result.getErrors());
+    int pages = expected.getDownloaded().size() + expected.getErrors().size();
+    assertTrue("elapsed " + elapsed,
+        elapsed >= TimeUnit.MILLISECONDS.toNanos(10) * (pages - 5) - 10 * MILLI);
+  }
+}
@@ -0,0 +1,71 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class LinkTokenizerTest {
+
+  private static final URI PAGE = URI.create("http://example.com/dir/page.html");
+
+  @Test
+  public void testAttributeSyntax() throws IOException {
+    assertSameAsJsoup("<a href=\"a.html\">a</a> <A HREF='b.html'>b</A> <a href=c.html>c</a>"
+        + "<a class=x\n  href = \"d.html\" >d</a><a title=\"x > y\" href=\"e.html\">e</a>"
+        + "<a href=\"ignored.html\" href=\"f.html\">f</a><a name=\"no-href\">g</a>"
+        + "<a href=\"/root.html#top\">h</a><a href=\"../up.html?q=1&amp;p=&#50;\">i</a>"
+        + "<a href=\"mailto:x@example.com\">j</a><a href=\"javascript:void(0)\">k</a>"
+        + "<a href=\"http://other.org\">l</a><a href=\"http://bad host/\">m</a>"
+        + "<a href=\"%D1%84.html\">n</a><a href=\"\u0444.html\">o</a><a/><a href>p</a>");
+  }
+
+  @Test
+  public void testCharacterReferences() throws IOException {
+    assertSameAsJsoup("<a href=\"a.html?x=&copy;&eacute;&notin;\">a</a>"
+        + "<a href=\"b.html?x=&copy&eacute\">b</a><a href=\"c.html?lang=en&amp=1&not=2\">c</a>"
+        + "<a href=\"d.html?x=&#x41;&#66;&#xZZ;&unknown;\">d</a><a href=\"e.html?&lt&gt;\">e</a>");
+  }
+
+  @Test
+  public void testSkippedContent() throws IOException {
+    assertSameAsJsoup("<!DOCTYPE html><!-- <a href=\"comment.html\"> --><!----><?xml x?>"
+        + "<script>document.write('<a href=\"script.html\">')</script>"
+        + "<SCRIPT type=\"text/javascript\">if (a </b) {}</scripts></SCRIPT >"
+        + "<style>a[href=\"style.html\"] {}</style><title><a href=\"title.html\"></title>"
+        + "<textarea><a href=\"textarea.html\"></textarea>"
+        + "<p>1 < 2 <a href=\"after.html\">after</a></p>");
+  }
+
+  @Test
+  public void testLargePage() throws IOException {
+    StringBuilder html = new StringBuilder("<html><body>");
+    for (int i = 0; i < 2000; i++) {
+      html.append("<p>paragraph ").append(i).append("</p><a href=\"page").append(i)
+          .append(".html\" class=\"link\">").append(i).append("</a>\n");
+    }
+    assertSameAsJsoup(html.append("</body></html>").toString());
+  }
+
+  @Test
+  public void testBase() throws IOException {
+    List<String> links = extract("<a href=\"a.html\"></a><base href=\"http://base.org/b/\">"
+        + "<base href=\"http://ignored.org/\"><a href=\"c.html\"></a>", LinkExtractor.STREAMING);
+
+    assertEquals(Arrays.asList("http://base.org/b/a.html", "http://base.org/b/c.html"), links);
+  }
+
+  private static void assertSameAsJsoup(String html) throws IOException {
+    assertEquals(extract(html, URLUtils::extractLinks), extract(html, LinkExtractor.STREAMING));
+  }
+
+  private static List<String> extract(String html, LinkExtractor extractor) throws IOException {
+    return extractor.extractLinks(PAGE, new ByteArrayInputStream(html.getBytes(UTF_8)));
+  }
+}
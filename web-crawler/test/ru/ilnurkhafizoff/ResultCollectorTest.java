@@ -0,0 +1,65 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class ResultCollectorTest {
+
+  @Test
+  public void testCollectsEvents() {
+    ResultCollector collector = new ResultCollector();
+    IOException error = new IOException("not found");
+
+    collector.onDownloaded("http://example.com/", 1);
+    collector.onError("http://example.com/missing", error);
+    collector.onDownloaded("http://example.com/a", 2);
+
+    Result result = collector.toResult();
+    assertEquals(Arrays.asList("http://example.com/", "http://example.com/a"), result.getDownloaded());
+    assertEquals(1, result.getErrors().size());
+    assertSame(error, result.getErrors().get("http://example.com/missing"));
+
+    // a result is a snapshot, later events do not change it
+    collector.onDownloaded("http://example.com/b", 2);
+    assertEquals(2, result.getDownloaded().size());
+    assertEquals(3, collector.toResult().getDownloaded().size());
+  }
+
+  @Test
+  public void testConcurrentEvents() throws InterruptedException {
+    ResultCollector collector = new ResultCollector();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int thread = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          String url = "http://host" + thread + "/page" + i;
+          if (i % 10 == 0) {
+            collector.onError(url, new IOException(url));
+          } else {
+            collector.onDownloaded(url, 1);
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Result result = collector.toResult();
+    Set<String> downloaded = new HashSet<>(result.getDownloaded());
+    assertEquals(7200, result.getDownloaded().size());
+    assertEquals(7200, downloaded.size());
+    assertEquals(800, result.getErrors().size());
+  }
+}
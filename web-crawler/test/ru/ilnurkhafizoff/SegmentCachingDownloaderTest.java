@@ -0,0 +1,75 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentCachingDownloaderTest {
+
+  private static final String PAGE =
+      "<html><body><a href=\"http://example.com/a\">a</a></body></html>";
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("segment-cache");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Collections.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void testServesCachedPages() throws IOException {
+    Path page = Files.write(directory.resolve("page.html"), PAGE.getBytes(UTF_8));
+    String url = page.toUri().toString();
+    List<String> links = Collections.singletonList("http://example.com/a");
+
+    try (SegmentCachingDownloader downloader =
+        new SegmentCachingDownloader(directory.resolve("store"))) {
+      SizedDocument fetched = (SizedDocument) downloader.download(url);
+      assertEquals(PAGE.getBytes(UTF_8).length, fetched.getBytes());
+      assertEquals(links, fetched.extractLinks());
+
+      // the page is only read from the store from now on
+      Files.delete(page);
+      SizedDocument cached = (SizedDocument) downloader.download(url);
+      assertEquals(0, cached.getBytes());
+      assertEquals(links, cached.extractLinks());
+    }
+
+    try (SegmentCachingDownloader downloader =
+        new SegmentCachingDownloader(directory.resolve("store"))) {
+      assertEquals(links, downloader.download(url).extractLinks());
+
+      // pages are stored by the normalized url
+      SizedDocument variant =
+          (SizedDocument) downloader.download(CanonicalUrl.of("FILE" + url.substring(4) + "#a"));
+      assertEquals(0, variant.getBytes());
+      assertEquals(links, variant.extractLinks());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingPage() throws IOException {
+    try (SegmentCachingDownloader downloader =
+        new SegmentCachingDownloader(directory.resolve("store"))) {
+      downloader.download(directory.resolve("missing.html").toUri().toString());
+    }
+  }
+}
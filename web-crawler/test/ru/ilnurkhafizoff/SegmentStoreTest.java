@@ -0,0 +1,200 @@
+package ru.ilnurkhafizoff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentStoreTest {
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("segment-store");
+  }
+
+  @After
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testReopenAfterTruncatedTail() throws IOException {
+    try (SegmentStore store = new SegmentStore(directory)) {
+      for (int i = 0; i < 10; i++) {
+        store.put(key(i), value(key(i), 0, 100));
+      }
+    }
+
+    // a crash tore the last record
+    Path segment = segmentFiles().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 5);
+    }
+
+    try (SegmentStore store = new SegmentStore(directory)) {
+      assertEquals(9, store.keys());
+      for (int i = 0; i < 9; i++) {
+        assertTrue(store.contains(key(i)));
+        assertArrayEquals(value(key(i), 0, 100), store.get(key(i)));
+      }
+      assertFalse(store.contains(key(9)));
+      assertNull(store.get(key(9)));
+
+      // appends continue right after the last intact record
+      store.put(key(9), value(key(9), 1, 100));
+    }
+
+    try (SegmentStore store = new SegmentStore(directory)) {
+      assertEquals(10, store.keys());
+      assertArrayEquals(value(key(9), 1, 100), store.get(key(9)));
+    }
+  }
+
+  @Test
+  public void testCompactionKeepsLiveRecords() throws IOException {
+    int keys = 20;
+    try (SegmentStore store = new SegmentStore(directory, 1000, Long.MAX_VALUE)) {
+      for (int version = 0; version < 10; version++) {
+        for (int i = 0; i < keys; i++) {
+          store.put(key(i), value(key(i), version, 50));
+        }
+      }
+      store.compact();
+
+      // every segment but the active one is at least half live
+      long live = 0;
+      for (int i = 0; i < keys; i++) {
+        live += 20 + key(i).length() + 50;
+      }
+      assertTrue(store.size() + " for " + live, store.size() <= 2 * live + 1000);
+      assertLatest(store, keys, 9, 50);
+    }
+
+    try (SegmentStore store = new SegmentStore(directory, 1000, Long.MAX_VALUE)) {
+      assertEquals(keys, store.keys());
+      assertLatest(store, keys, 9, 50);
+    }
+  }
+
+  @Test
+  public void testEvictsOldestSegments() throws IOException {
+    long segmentBytes = 1000;
+    long maxBytes = 3000;
+    int keys = 100;
+    try (SegmentStore store = new SegmentStore(directory, segmentBytes, maxBytes)) {
+      for (int i = 0; i < keys; i++) {
+        store.put(key(i), value(key(i), 0, 200));
+        assertTrue(store.size() <= maxBytes + segmentBytes);
+      }
+
+      // evicted keys are exactly the earliest ones
+      int firstKept = 0;
+      while (!store.contains(key(firstKept))) {
+        assertNull(store.get(key(firstKept)));
+        firstKept++;
+      }
+      assertTrue(firstKept > 0);
+      for (int i = firstKept; i < keys; i++) {
+        assertTrue(key(i), store.contains(key(i)));
+        assertArrayEquals(value(key(i), 0, 200), store.get(key(i)));
+      }
+      assertEquals(keys - firstKept, store.keys());
+    }
+  }
+
+  @Test
+  public void testConcurrentGetAndPut() throws Exception {
+    int keys = 200;
+    int threads = 8;
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    try (SegmentStore store = new SegmentStore(directory, 4096, Long.MAX_VALUE)) {
+      List<Thread> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int thread = t;
+        workers.add(new Thread(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          try {
+            // every thread owns the keys equal to its number modulo threads
+            for (int version = 0; version < 20; version++) {
+              for (int i = thread; i < keys; i += threads) {
+                store.put(key(i), value(key(i), version, 30));
+
+                // a read sees some version of the key, never another record
+                String other = key(random.nextInt(keys));
+                byte[] value = store.get(other);
+                if (value != null && !new String(value, UTF_8).startsWith(other + "#")) {
+                  throw new AssertionError(other + " read " + new String(value, UTF_8));
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }));
+      }
+      workers.forEach(Thread::start);
+      for (Thread worker : workers) {
+        worker.join();
+      }
+
+      if (failure.get() != null) {
+        throw new AssertionError(failure.get());
+      }
+      assertEquals(keys, store.keys());
+      assertLatest(store, keys, 19, 30);
+    }
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> result = new ArrayList<>();
+      files.sorted().forEach(result::add);
+      return result;
+    }
+  }
+
+  private static void assertLatest(SegmentStore store, int keys, int version, int length)
+      throws IOException {
+    for (int i = 0; i < keys; i++) {
+      assertTrue(key(i), store.contains(key(i)));
+      assertArrayEquals(key(i), value(key(i), version, length), store.get(key(i)));
+    }
+  }
+
+  private static String key(int i) {
+    return "http://example.com/page" + i;
+  }
+
+  // key and version padded to length bytes
+  private static byte[] value(String key, int version, int length) {
+    byte[] prefix = (key + "#" + version + "#").getBytes(UTF_8);
+    byte[] value = Arrays.copyOf(prefix, Math.max(length, prefix.length));
+    Arrays.fill(value, prefix.length, value.length, (byte) 'x');
+    return value;
+  }
+}
@@ -0,0 +1,105 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ThreadPerTaskExecutorTest {
+
+  @Test
+  public void testMaxRunning() throws InterruptedException {
+    ThreadPerTaskExecutor executor =
+        new ThreadPerTaskExecutor(ThreadPerTaskExecutor.newThreadFactory("Test-"), 8);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(200);
+
+    for (int i = 0; i < 200; i++) {
+      executor.execute(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        done.countDown();
+      });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue("max running " + maxRunning, maxRunning.get() <= 8);
+  }
+
+  @Test
+  public void testShutdownNow() throws InterruptedException {
+    ThreadPerTaskExecutor executor =
+        new ThreadPerTaskExecutor(ThreadPerTaskExecutor.newThreadFactory("Test-"), 1);
+    CountDownLatch started = new CountDownLatch(1);
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        // interrupted by shutdownNow
+      }
+    });
+    executor.execute(() -> {
+    });
+
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertEquals(1, executor.shutdownNow().size());
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testThreadStartFailure() throws InterruptedException {
+    ThreadFactory threads = ThreadPerTaskExecutor.newThreadFactory("Test-");
+    AtomicInteger created = new AtomicInteger();
+    ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(r -> {
+      if (created.incrementAndGet() == 1) {
+        throw new IllegalStateException("no threads today");
+      }
+      return threads.newThread(r);
+    }, 1);
+    CountDownLatch done = new CountDownLatch(2);
+
+    executor.execute(done::countDown);
+    assertEquals(0, executor.getRunning());
+    assertEquals(1, executor.getQueued());
+
+    // the next submission starts both, one after another
+    executor.execute(done::countDown);
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(0, executor.getRunning());
+  }
+
+  @Test
+  public void testCrawl() throws IOException {
+    String url = "http://neerc.ifmo.ru/subregions/index.html";
+    ReplayDownloader downloader = new ReplayDownloader(url, 3, 10, 1);
+
+    Result result;
+    try (WebCrawler crawler =
+        WebCrawler.threadPerDownload(downloader, 1000, 4, 100, HostLimits.fixed())) {
+      result = crawler.download(url, 3);
+    }
+
+    Result expected = downloader.expected(3);
+    assertEquals(new HashSet<>(expected.getDownloaded()), new HashSet<>(result.getDownloaded()));
+    assertEquals(expected.getErrors(), result.getErrors());
+  }
+}
@@ -0,0 +1,137 @@
+package ru.ilnurkhafizoff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.ReplayDownloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class UrlProcessorTest {
+
+  private static final String URL = "http://neerc.ifmo.ru/subregions/index.html";
+
+  @Test
+  public void testCompletesOnceEveryPageIsDone() throws IOException, InterruptedException {
+    for (int round = 0; round < 10; round++) {
+      ReplayDownloader downloader = new ReplayDownloader(URL, 3, 2, 2);
+      Map<String, Integer> events = new ConcurrentHashMap<>();
+
+      try (WebCrawler crawler = new WebCrawler(downloader, 16, 4, 8)) {
+        crawler.download(URL, 3, new CrawlListener() {
+          @Override
+          public void onDownloaded(String url, int depth) {
+            events.merge(url, 1, Integer::sum);
+          }
+
+          @Override
+          public void onError(String url, IOException e) {
+            events.merge(url, 1, Integer::sum);
+          }
+        });
+        Map<String, Integer> atReturn = new ConcurrentHashMap<>(events);
+
+        Result expected = downloader.expected(3);
+        Set<String> expectedUrls = new HashSet<>(expected.getDownloaded());
+        expectedUrls.addAll(expected.getErrors().keySet());
+        assertEquals(expectedUrls.size(), atReturn.size());
+        assertEquals(expectedUrls, atReturn.keySet());
+        assertTrue(atReturn.toString(), atReturn.values().stream().allMatch(n -> n == 1));
+
+        // nothing was left running when the crawl reported completion
+        Thread.sleep(20);
+        assertEquals(atReturn, events);
+      }
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void testBrokenPageFailsItsUrl() {
+    String root = "http://example.com/";
+    String broken = root + "broken";
+    Downloader downloader = url -> {
+      if (url.equals(broken)) {
+        return () -> {
+          throw new IllegalStateException("Broken page");
+        };
+      }
+      return () -> Collections.singletonList(broken);
+    };
+
+    try (WebCrawler crawler = new WebCrawler(downloader, 4, 4, 4)) {
+      Result result = crawler.download(root, 3);
+
+      assertEquals(Collections.singletonList(root), result.getDownloaded());
+      assertEquals(Collections.singleton(broken), result.getErrors().keySet());
+      assertTrue(result.getErrors().get(broken).getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void testInterruptStopsEvents() throws InterruptedException {
+    String root = "http://example.com/";
+    List<String> links = IntStream.range(0, 10)
+        .mapToObj(i -> root + "page" + i)
+        .collect(Collectors.toList());
+    CountDownLatch release = new CountDownLatch(1);
+    Downloader downloader = url -> {
+      if (url.equals(root)) {
+        return () -> links;
+      }
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections::emptyList;
+    };
+
+    Set<String> events = ConcurrentHashMap.newKeySet();
+    CountDownLatch rootDownloaded = new CountDownLatch(1);
+    AtomicBoolean interruptedAtReturn = new AtomicBoolean();
+    try (WebCrawler crawler = new WebCrawler(downloader, 4, 4, 4)) {
+      Thread crawl = new Thread(() -> {
+        crawler.download(root, 2, new CrawlListener() {
+          @Override
+          public void onDownloaded(String url, int depth) {
+            events.add(url);
+            rootDownloaded.countDown();
+          }
+
+          @Override
+          public void onError(String url, IOException e) {
+            events.add(url);
+          }
+        });
+        interruptedAtReturn.set(Thread.currentThread().isInterrupted());
+      });
+      crawl.start();
+
+      assertTrue(rootDownloaded.await(10, TimeUnit.SECONDS));
+      crawl.interrupt();
+      crawl.join(TimeUnit.SECONDS.toMillis(10));
+      assertTrue(interruptedAtReturn.get());
+      assertEquals(Collections.singleton(root), events);
+
+      // pages left in flight finish after the call returned, without reaching the listener
+      release.countDown();
+      Thread.sleep(50);
+      assertEquals(Collections.singleton(root), events);
+    } finally {
+      release.countDown();
+    }
+  }
+}